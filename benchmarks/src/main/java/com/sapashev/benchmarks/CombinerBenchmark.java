@@ -0,0 +1,87 @@
+package com.sapashev.benchmarks;
+
+import com.sapashev.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging of sorted runs to the one reference file: cascade of pairwise Combiner.mergeToOne against
+ * one pass of KWayMerger, for several numbers of runs. Runs are saved again before each invocation.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CombinerBenchmark extends SourceState {
+    @Param({"2", "8", "32"})
+    public int runs;
+
+    private final Combiner combiner = new Combiner();
+    private Packer packer;
+    private long[] scanned;
+    private List<File> files;
+    private File result;
+
+    @Override
+    protected void prepare () throws IOException {
+        packer = Packer.forSource(Files.size(source));
+        scanned = Scanned.scan(source, packer);
+    }
+
+    @Setup(Level.Invocation)
+    public void save () throws IOException {
+        files = new ArrayList<>(runs);
+        int step = (scanned.length + runs - 1) / runs;
+        try(Sorter sorter = new Sorter()){
+            for(int from = 0; from < scanned.length; from += step){
+                long[] run = Arrays.copyOfRange(scanned, from, Math.min(from + step, scanned.length));
+                sorter.sort(run, run.length, packer);
+                files.add(combiner.saveToTempFile(run, packer));
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void delete (){
+        files.forEach(File::delete);
+        if(result != null){
+            result.delete();
+        }
+    }
+
+    @Benchmark
+    public File mergeToOne () throws IOException {
+        List<File> current = files;
+        while (current.size() > 1){
+            List<File> next = new ArrayList<>();
+            for(int i = 0; i + 1 < current.size(); i += 2){
+                next.add(combiner.mergeToOne(current.get(i), current.get(i + 1), packer));
+                current.get(i).delete();
+                current.get(i + 1).delete();
+            }
+            if(current.size() % 2 == 1){
+                next.add(current.get(current.size() - 1));
+            }
+            current = next;
+        }
+        result = current.get(0);
+        return result;
+    }
+
+    @Benchmark
+    public File kWayMerge () throws IOException {
+        result = new KWayMerger(packer).merge(files);
+        return result;
+    }
+}
@@ -0,0 +1,70 @@
+package com.sapashev.benchmarks;
+
+import com.sapashev.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copying of lines from source to destination in order of sorted reference file:
+ * Copier.directCopy against multiBufferDirectCopy and parallelCopy.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CopierBenchmark extends SourceState {
+    private final Copier copier = new Copier();
+    private Packer packer;
+    private File reference;
+    private Path destination;
+    private String[] args;
+
+    @Override
+    protected void prepare () throws IOException {
+        packer = Packer.forSource(Files.size(source));
+        long[] metas = Scanned.scan(source, packer);
+        try(Sorter sorter = new Sorter(true)){
+            sorter.sort(metas, metas.length, packer);
+        }
+        reference = new Combiner().saveToTempFile(metas, packer);
+        destination = source.resolveSibling(source.getFileName() + ".out");
+        args = new String[]{source.toString(), destination.toString(), charset};
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteResult () throws IOException {
+        Files.deleteIfExists(destination);
+    }
+
+    @Override
+    protected void cleanUp (){
+        reference.delete();
+    }
+
+    @Benchmark
+    public Path directCopy () throws IOException {
+        return copier.directCopy(args, reference, packer);
+    }
+
+    @Benchmark
+    public Path multiBufferDirectCopy () throws IOException {
+        copier.multiBufferDirectCopy(args, reference, packer);
+        return destination;
+    }
+
+    @Benchmark
+    public Path parallelCopy () throws Exception {
+        try(RunReader ref = new RunReader(reference, packer, RunReader.DEFAULT_BUFFER)){
+            return copier.parallelCopy(args, ref, packer, Runtime.getRuntime().availableProcessors());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.sapashev.benchmarks;
+
+import com.sapashev.SortLines;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole sort of the source file by SortLines, for each engine and for budgets which keep all lines in memory
+ * or force external runs. Besides time of sort, throughput is reported in megabytes of source per second
+ * (secondary result "megabytes").
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EndToEndBenchmark extends SourceState {
+    @Param({"merge", "counting"})
+    public String engine;
+
+    @Param({"50%", "4m"})
+    public String budget;
+
+    private Path destination;
+
+    /**
+     * Megabytes of source sorted, JMH divides them by time of measurement.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+    }
+
+    @Override
+    protected void prepare (){
+        destination = source.resolveSibling(source.getFileName() + ".sorted");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteResult () throws IOException {
+        Files.deleteIfExists(destination);
+    }
+
+    @Benchmark
+    public void sort (Throughput throughput) throws Exception {
+        new SortLines().start(new String[]{source.toString(), destination.toString(), charset, budget,
+                "auto", "auto", engine});
+        throughput.megabytes += Files.size(source) / (1024.0 * 1024.0);
+    }
+}
@@ -0,0 +1,72 @@
+package com.sapashev.benchmarks;
+
+import com.sapashev.Packer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packing and unpacking of pairs (position:line length), for the fixed 26/37 layout and for the layout chosen
+ * from the file size. File size is the only parameter which changes the packed values.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PackerBenchmark {
+    private static final int PAIRS = 4096;
+
+    @Param({"16", "1024"})
+    public int sizeMb;
+
+    @Param({"fixed", "auto"})
+    public String layout;
+
+    private Packer packer;
+    private final int[] lengths = new int[PAIRS];
+    private final long[] positions = new long[PAIRS];
+    private final long[] packed = new long[PAIRS];
+
+    @Setup
+    public void setUp (){
+        long size = (long)sizeMb * 1024 * 1024;
+        packer = "auto".equals(layout) ? Packer.forSource(size) : new Packer(26, 37);
+        Random random = new Random(1);
+        for(int i = 0; i < PAIRS; i++){
+            lengths[i] = random.nextInt(1024);
+            positions[i] = (long)(random.nextDouble() * (size - 1024));
+            packed[i] = packer.packToLong(lengths[i], positions[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void packToLong (Blackhole bh){
+        for(int i = 0; i < PAIRS; i++){
+            bh.consume(packer.packToLong(lengths[i], positions[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void getLength (Blackhole bh){
+        for(int i = 0; i < PAIRS; i++){
+            bh.consume(packer.getLength(packed[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void getPosition (Blackhole bh){
+        for(int i = 0; i < PAIRS; i++){
+            bh.consume(packer.getPosition(packed[i]));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.sapashev.benchmarks;
+
+import com.sapashev.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading of line positions and lengths from the whole source file:
+ * legacy Reader.readFromFileTo, which decodes each line to String, against ByteScanner.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReaderBenchmark extends SourceState {
+    private static final int BATCH = 1 << 20;
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public long readFromFileTo () throws IOException {
+        SortLines sortLines = new SortLines();
+        SortLines.Counter c = sortLines.new Counter();
+        SortLines.Position p = sortLines.new Position();
+        Reader reader = new Reader();
+        List<Line> lines = new ArrayList<>(BATCH);
+        long total = 0;
+        try(BufferedReader br = Files.newBufferedReader(source, Charset.forName(charset))){
+            boolean eof = false;
+            while (!eof){
+                lines.clear();
+                eof = reader.readFromFileTo(lines, 1, BATCH, br, c, p);
+                total += lines.size();
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long byteScanner () throws IOException {
+        Packer packer = Packer.forSource(Files.size(source));
+        long[] metas = new long[BATCH];
+        long total = 0;
+        try(ByteScanner scanner = new ByteScanner(source)){
+            while (!scanner.isEOF()){
+                total += scanner.scan(metas, BATCH, packer);
+            }
+        }
+        return total;
+    }
+}
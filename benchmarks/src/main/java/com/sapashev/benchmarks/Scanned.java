@@ -0,0 +1,37 @@
+package com.sapashev.benchmarks;
+
+import com.sapashev.ByteScanner;
+import com.sapashev.Packer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Packed values of all lines of the source file in order of file, prepared once per trial.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+final class Scanned {
+    private Scanned(){
+    }
+
+    /**
+     * @param source - source file.
+     * @param packer - packer object which packs pairs (position:line length) to the long value.
+     * @return - packed values of all lines.
+     * @throws IOException
+     */
+    static long[] scan (Path source, Packer packer) throws IOException {
+        long[] buffer = new long[(int)Math.min(Files.size(source) + 1, Integer.MAX_VALUE - 8)];
+        int count = 0;
+        try(ByteScanner scanner = new ByteScanner(source)){
+            while (!scanner.isEOF()){
+                count += scanner.scan(buffer, count, buffer.length - count, packer);
+            }
+        }
+        return Arrays.copyOf(buffer, count);
+    }
+}
@@ -0,0 +1,69 @@
+package com.sapashev.benchmarks;
+
+import com.sapashev.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting of packed values of all lines of the source file: radix sort by one and by all threads,
+ * against the legacy stream sort of Line objects. Each invocation sorts fresh copy of values in order of file.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SorterBenchmark extends SourceState {
+    private Packer packer;
+    private long[] scanned;
+    private long[] metas;
+    private List<Line> lines;
+    private final Sorter single = new Sorter(false);
+    private final Sorter parallel = new Sorter(true);
+
+    @Override
+    protected void prepare () throws IOException {
+        packer = Packer.forSource(Files.size(source));
+        scanned = Scanned.scan(source, packer);
+        lines = new ArrayList<>(scanned.length);
+        for(long value : scanned){
+            lines.add(new Line(packer.getPosition(value), packer.getLength(value)));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void copy (){
+        metas = scanned.clone();
+    }
+
+    @Override
+    protected void cleanUp (){
+        single.close();
+        parallel.close();
+    }
+
+    @Benchmark
+    public long[] radixSort (){
+        single.sort(metas, metas.length, packer);
+        return metas;
+    }
+
+    @Benchmark
+    public long[] parallelRadixSort (){
+        parallel.sort(metas, metas.length, packer);
+        return metas;
+    }
+
+    @Benchmark
+    public long[] streamSort (){
+        return single.sort(lines, packer);
+    }
+}
@@ -0,0 +1,68 @@
+package com.sapashev.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates source files for benchmarks. Content depends only on parameters, so all runs measure the same data.
+ * Distributions of line length (in chars):
+ * 1) "uniform" - from 0 to 200;
+ * 2) "short" - from 0 to 16, many equal lengths;
+ * 3) "longTail" - mostly from 0 to 80, each hundredth line up to 64K.
+ * Lines mix latin and cyrillic letters, so multi-byte charsets give byte lengths different from char lengths.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public final class SourceFile {
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz абвгдеёжзийклмнопрстуфхцчшщъыьэюя";
+
+    private SourceFile(){
+    }
+
+    /**
+     * @param sizeMb - approximate size of file in megabytes.
+     * @param distribution - distribution of line length.
+     * @param charset - charset of file.
+     * @return - temp file, deleted on exit.
+     * @throws IOException
+     */
+    public static Path generate (int sizeMb, String distribution, String charset) throws IOException {
+        Path file = Files.createTempFile("arsBENCH_", ".txt");
+        file.toFile().deleteOnExit();
+        Charset cs = Charset.forName(charset);
+        byte[] separator = "\n".getBytes(cs);
+        long size = (long)sizeMb * 1024 * 1024;
+        Random random = new Random(sizeMb * 31L + distribution.hashCode());
+        StringBuilder line = new StringBuilder();
+        try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 20)){
+            long written = 0;
+            while (written < size){
+                line.setLength(0);
+                int length = length(distribution, random);
+                for(int i = 0; i < length; i++){
+                    line.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+                }
+                byte[] bytes = line.toString().getBytes(cs);
+                out.write(bytes);
+                out.write(separator);
+                written += bytes.length + separator.length;
+            }
+        }
+        return file;
+    }
+
+    private static int length (String distribution, Random random){
+        switch (distribution){
+            case "uniform": return random.nextInt(201);
+            case "short": return random.nextInt(17);
+            case "longTail": return random.nextInt(100) == 0 ? random.nextInt(64 * 1024) : random.nextInt(81);
+            default: throw new IllegalArgumentException(String.format("Unknown distribution %s", distribution));
+        }
+    }
+}
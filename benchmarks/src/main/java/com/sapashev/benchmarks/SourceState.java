@@ -0,0 +1,55 @@
+package com.sapashev.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Common parameters of benchmarks which read the source file: file size, line-length distribution and charset.
+ * Source file is generated once per trial (see {@link SourceFile}), then subclass prepares its data by prepare().
+ * JMH does not define order of helper methods of one level, so subclasses override prepare() and cleanUp()
+ * instead of declaring their own trial helpers.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+public abstract class SourceState {
+    @Param({"16", "128"})
+    public int sizeMb;
+
+    @Param({"uniform", "short", "longTail"})
+    public String distribution;
+
+    @Param({"UTF-8", "windows-1251"})
+    public String charset;
+
+    protected Path source;
+
+    @Setup(Level.Trial)
+    public void generate () throws IOException {
+        source = SourceFile.generate(sizeMb, distribution, charset);
+        prepare();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete () throws IOException {
+        cleanUp();
+        Files.deleteIfExists(source);
+    }
+
+    /**
+     * Prepares data of benchmark after the source file is generated.
+     * @throws IOException
+     */
+    protected void prepare () throws IOException {
+    }
+
+    /**
+     * Deletes data of benchmark before the source file is deleted.
+     */
+    protected void cleanUp (){
+    }
+}
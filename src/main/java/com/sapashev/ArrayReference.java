@@ -0,0 +1,71 @@
+package com.sapashev;
+
+/**
+ * Reference held in memory as array of packed values sorted by line length or in the order with key (see {@link KeyOrder}).
+ * Values may be held in java array or off-heap (see {@link LongArray}), off-heap array is freed by close().
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class ArrayReference implements Reference {
+    private final LongArray metas;
+    private final long size;
+    private final int maxLength;
+    private long index;
+
+    /**
+     * @param metas - sorted packed values.
+     * @param size - number of values.
+     * @param p - packer object which unpacks pairs (position:line length) from packed long value.
+     */
+    public ArrayReference(long[] metas, int size, Packer p){
+        this(LongArray.wrap(metas), size, p);
+    }
+
+    /**
+     * @param metas - sorted packed values.
+     * @param size - number of values.
+     * @param p - packer object which unpacks pairs (position:line length) from packed long value.
+     */
+    public ArrayReference(LongArray metas, long size, Packer p){
+        this.metas = metas;
+        this.size = size;
+        this.maxLength = size > 0 ? p.getLength(metas.get(size - 1)) : 0;
+    }
+
+    /**
+     * @param metas - packed values in any order.
+     * @param size - number of values.
+     * @param maxLength - maximal line length among values.
+     */
+    public ArrayReference(LongArray metas, long size, int maxLength){
+        this.metas = metas;
+        this.size = size;
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public boolean hasNext (){
+        return index < size;
+    }
+
+    @Override
+    public long next (){
+        return metas.get(index++);
+    }
+
+    @Override
+    public long count (){
+        return size;
+    }
+
+    @Override
+    public int maxLength (){
+        return maxLength;
+    }
+
+    @Override
+    public void close (){
+        metas.close();
+    }
+}
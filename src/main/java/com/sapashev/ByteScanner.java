@@ -0,0 +1,234 @@
+package com.sapashev;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Scans region of source file for line terminators at the byte level.
+ * Source file is walked through consecutive MappedByteBuffer windows, no String or Line objects are created.
+ * Each found line is packed (exact start position in bytes : exact length in bytes) to the one long value
+ * and stored straight to the array of long.
+ * Both "\n" and "\r\n" terminators are recognized, terminator bytes are not counted in line length.
+ * Lines which could not be packed are passed to the wide records if scanner has them, otherwise packer throws.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class ByteScanner implements Closeable {
+    public static final int DEFAULT_WINDOW = 64 * 1024 * 1024;
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long LF_PATTERN = ONES * LF;
+    private static final int STAGING = 8192;                //values scanned at once to the off-heap array.
+
+    private final FileChannel channel;
+    private final long end;
+    private final int window;
+    private MappedByteBuffer buffer;
+    private long bufferStart;           //position of the first byte of current window in the file.
+    private long position;              //position of the next unscanned byte in the file.
+    private long lineStart;             //position of the first byte of line being scanned.
+    private byte lastByte;              //last byte of previous window, needed to recognize "\r\n" on windows boundary.
+    private long[] staging;
+    private WideRecords wide;
+
+    /**
+     * Creates scanner of the whole file.
+     * @param source - source file.
+     * @throws IOException
+     */
+    public ByteScanner(Path source) throws IOException {
+        this(source, 0, -1, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Creates scanner of the region of file.
+     * @param source - source file.
+     * @param from - position of the first byte of region, should be the start of some line.
+     * @param to - position next to the last byte of region, or -1 to scan till the end of file.
+     * @param window - size in bytes of each mapped window.
+     * @throws IOException
+     */
+    public ByteScanner(Path source, long from, long to, int window) throws IOException {
+        this.channel = FileChannel.open(source, StandardOpenOption.READ);
+        this.end = to < 0 ? channel.size() : Math.min(to, channel.size());
+        this.window = Math.max(window, Long.BYTES);
+        this.position = from;
+        this.lineStart = from;
+        this.bufferStart = from;
+    }
+
+    /**
+     * Creates scanner of the region of file, which passes lines overflowing the packer to the wide records.
+     * @param source - source file.
+     * @param from - position of the first byte of region, should be the start of some line.
+     * @param to - position next to the last byte of region, or -1 to scan till the end of file.
+     * @param window - size in bytes of each mapped window.
+     * @param wide - collection of lines which could not be packed.
+     * @throws IOException
+     */
+    public ByteScanner(Path source, long from, long to, int window, WideRecords wide) throws IOException {
+        this(source, from, to, window);
+        this.wide = wide;
+    }
+
+    /**
+     * Checks whether line feed of that charset is encoded as the single '\n' byte,
+     * so lines could be found without decoding.
+     * @param charset - charset of source file.
+     * @return true if charset could be scanned at the byte level.
+     */
+    public static boolean isSupported (Charset charset){
+        byte[] lf = "\n".getBytes(charset);
+        byte[] cr = "\r".getBytes(charset);
+        return lf.length == 1 && lf[0] == LF && cr.length == 1 && cr[0] == CR;
+    }
+
+    /**
+     * Fills metas array with packed pairs (position:length) of the next lines of region.
+     * @param metas - array to store packed values to.
+     * @param max - maximal number of values to store.
+     * @param p - packer object which packs pairs (position:line length) to the long value.
+     * @return - number of values stored to the array.
+     * @throws IOException
+     */
+    public int scan (long[] metas, int max, Packer p) throws IOException {
+        return scan(metas, 0, max, p);
+    }
+
+    /**
+     * Fills metas array starting from the given index with packed pairs (position:length) of the next lines of region.
+     * @param metas - array to store packed values to.
+     * @param offset - index of array to store the first value to.
+     * @param max - maximal number of values to store.
+     * @param p - packer object which packs pairs (position:line length) to the long value.
+     * @return - number of values stored to the array.
+     * @throws IOException
+     */
+    public int scan (long[] metas, int offset, int max, Packer p) throws IOException {
+        int count = offset;
+        int last = offset + max;
+        while (count < last && position < end){
+            if(buffer == null || position >= bufferStart + buffer.limit()){
+                nextWindow();
+            }
+            MappedByteBuffer buf = buffer;
+            int limit = buf.limit();
+            int i = (int)(position - bufferStart);
+            while (count < last && i < limit){
+                int lf;
+                if(i + Long.BYTES <= limit){
+                    long x = buf.getLong(i) ^ LF_PATTERN;
+                    long found = ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);     //high bit set in each zero byte, e.g. '\n' byte.
+                    if(found == 0){
+                        i += Long.BYTES;
+                        continue;
+                    }
+                    lf = i + (Long.numberOfTrailingZeros(found) >>> 3);
+                } else if(buf.get(i) == LF){
+                    lf = i;
+                } else {
+                    i++;
+                    continue;
+                }
+                long absolute = bufferStart + lf;
+                long length = absolute - lineStart;
+                if(length > 0 && (lf > 0 ? buf.get(lf - 1) : lastByte) == CR){
+                    length--;
+                }
+                if(wide != null && !p.fits(length, lineStart)){
+                    wide.add(lineStart, length);
+                } else {
+                    metas[count++] = p.packToLong(toInt(length), lineStart);
+                }
+                lineStart = absolute + 1;
+                i = lf + 1;
+            }
+            position = bufferStart + i;
+        }
+        if(count < last && position >= end && lineStart < end){                         //last line without terminator.
+            long length = end - lineStart;
+            if(buffer.get((int)(end - 1 - bufferStart)) == CR){
+                length--;
+            }
+            if(wide != null && !p.fits(length, lineStart)){
+                wide.add(lineStart, length);
+            } else {
+                metas[count++] = p.packToLong(toInt(length), lineStart);
+            }
+            lineStart = end;
+        }
+        return count - offset;
+    }
+
+    /**
+     * Fills off-heap array starting from the given index with packed pairs (position:length) of the next lines of region.
+     * Lines are scanned to the small staging array, which is copied to the off-heap array in bulk.
+     * @param metas - array to store packed values to.
+     * @param offset - index of array to store the first value to.
+     * @param max - maximal number of values to store.
+     * @param p - packer object which packs pairs (position:line length) to the long value.
+     * @return - number of values stored to the array.
+     * @throws IOException
+     */
+    public long scan (LongArray metas, long offset, long max, Packer p) throws IOException {
+        if(staging == null){
+            staging = new long[STAGING];
+        }
+        long count = 0;
+        while (count < max && !isEOF()){
+            int scanned = scan(staging, 0, (int)Math.min(STAGING, max - count), p);
+            metas.put(offset + count, staging, 0, scanned);
+            count += scanned;
+        }
+        return count;
+    }
+
+    /**
+     * @return - position in the file next to the last scanned line, bytes before it are scanned.
+     */
+    public long position (){
+        return Math.min(lineStart, end);
+    }
+
+    /**
+     * @return - true if all lines of region have been scanned.
+     */
+    public boolean isEOF (){
+        return position >= end && lineStart >= end;
+    }
+
+    /**
+     * Lines longer than Integer.MAX_VALUE bytes are reported with that maximal length, so packer rejects them.
+     */
+    private static int toInt (long length){
+        return (int)Math.min(length, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Maps next window of the region starting from the current position.
+     * @throws IOException
+     */
+    private void nextWindow () throws IOException {
+        if(buffer != null && buffer.limit() > 0){
+            lastByte = buffer.get(buffer.limit() - 1);
+        }
+        bufferStart = position;
+        long size = Math.min(window, end - position);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, bufferStart, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void close () throws IOException {
+        channel.close();
+    }
+}
@@ -1,40 +1,152 @@
 package com.sapashev;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Combines all sorted arrays of meta information about lines in one final file.
  * Every array will be written to the temp file. And when all meta information from source file will be read,
  * all partial arrays stored in temp files will be merged to the one sorted file.
+ * Consecutive runs which form one natural run are joined before merge. Natural order is detected only
+ * between whole runs: each run is one sorted buffer, ascending stretches inside the buffer of unsorted source
+ * are not looked for, and runs are joined only if the longest line of one is not longer than the shortest of the next.
  * @author Arslan Sapashev
  * @since 01.01.2017
  * @version 1.0
  */
 public class Combiner {
+    private static final int PEEK_BUFFER = 8 * 1024;                //read buffers of runs checked for natural order.
+    private final SpillManager spills;
+    private SortListener listener = SortListener.NONE;
+
+    public Combiner(){
+        this(SpillManager.defaultManager());
+    }
+
+    /**
+     * @param spills - manager which places temp files to the spill directories.
+     */
+    public Combiner(SpillManager spills){
+        this.spills = spills;
+    }
+
+    /**
+     * @param listener - listener of saved runs, joins and merges.
+     */
+    public void setListener (SortListener listener){
+        this.listener = listener;
+    }
 
     /**
      * Creates temporary file and then saves long values from metas array to that file.
      * @param metas - array of long value to be stored to temp file.
+     * @param p - packer object which unpacks pairs (position:line length) from packed long value.
      * @return - temp file which contains all values from array.
      * @throws IOException
      */
-    public File saveToTempFile(long[] metas) throws IOException{
-        File f = File.createTempFile("arsRAW_", null);
-        f.deleteOnExit();
-        BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(f));
-        try(DataOutputStream dos = new DataOutputStream(bos)){
-            for(long l : metas){
-                dos.writeLong(l);
-            }
+    public File saveToTempFile(long[] metas, Packer p) throws IOException{
+        return saveToTempFile(metas, metas.length, p);
+    }
+
+    /**
+     * Creates temporary file and then saves first "size" long values from metas array to that file.
+     * Values are stored in the compact run format (see {@link RunWriter}).
+     * @param metas - array of long value to be stored to temp file.
+     * @param size - number of values to be stored.
+     * @param p - packer object which unpacks pairs (position:line length) from packed long value.
+     * @return - temp file which contains values from array.
+     * @throws IOException
+     */
+    public File saveToTempFile(long[] metas, int size, Packer p) throws IOException{
+        File f = spills.create("arsRAW_", (long)size * Long.BYTES);
+        try(RunWriter writer = new RunWriter(f, p, RunWriter.DEFAULT_BUFFER)){
+            writer.write(metas, size);
+        } catch (IOException | RuntimeException e){
+            spills.delete(f);                   //partial run.
+            throw e;
         }
+        listener.runProduced(size, f.length());
         return f;
     }
 
+    /**
+     * Creates temporary file and then saves first "size" long values from off-heap array to that file.
+     * @param metas - array of long value to be stored to temp file.
+     * @param size - number of values to be stored.
+     * @param p - packer object which unpacks pairs (position:line length) from packed long value.
+     * @return - temp file which contains values from array.
+     * @throws IOException
+     */
+    public File saveToTempFile(LongArray metas, long size, Packer p) throws IOException{
+        File f = spills.create("arsRAW_", size * Long.BYTES);
+        try(RunWriter writer = new RunWriter(f, p, RunWriter.DEFAULT_BUFFER)){
+            writer.write(metas, size);
+        } catch (IOException | RuntimeException e){
+            spills.delete(f);                   //partial run.
+            throw e;
+        }
+        listener.runProduced(size, f.length());
+        return f;
+    }
+
+    /**
+     * Joins consecutive runs which together form one natural run: if the longest line of run is not longer
+     * than the shortest line of the next one, the next run is appended to it without merging
+     * (see {@link RunWriter#concat(File, List)}). Joined runs are deleted.
+     * Already sorted source gives the only run, which needs no merge at all.
+     * @param runs - sorted runs in order of source.
+     * @param p - packer object which unpacks pairs (position:line length) from packed long value.
+     * @return - runs left after joining, in order of source.
+     * @throws IOException
+     */
+    public List<File> joinNaturalRuns (List<File> runs, Packer p) throws IOException {
+        List<File> result = new ArrayList<>();
+        List<File> chain = new ArrayList<>();
+        int last = 0;
+        for(File run : runs){
+            try(RunReader reader = new RunReader(run, p, PEEK_BUFFER)){
+                if(!reader.hasNext()){
+                    chain.add(run);
+                    continue;
+                }
+                if(!chain.isEmpty() && p.getLength(reader.next()) < last){
+                    result.add(join(chain));
+                    chain.clear();
+                }
+                chain.add(run);
+                last = reader.maxLength();
+            }
+        }
+        if(!chain.isEmpty()){
+            result.add(join(chain));
+        }
+        return result;
+    }
+
+    /**
+     * Appends all runs of chain to the first one and deletes them, reservation of the first run is changed to its new size.
+     * @return - the first run of chain.
+     * @throws IOException
+     */
+    private File join (List<File> chain) throws IOException {
+        File first = chain.get(0);
+        if(chain.size() > 1){
+            List<File> rest = chain.subList(1, chain.size());
+            RunWriter.concat(first, rest);
+            rest.forEach(spills::delete);
+            spills.resize(first, first.length());
+            listener.joined(chain.size(), first.length());
+        }
+        return first;
+    }
+
     /**
      * Merges content of two files to the one file. Values of both temp files will be stored to the final file
      * in sorted ascending manner.
      * Compares long values based on the length of line, stored in less significant bits of each long value;
+     * values of equal length are taken from the first file first.
      * @param first - file which content to be sorted and stored to the final compound file.
      * @param second - file which content to be sorted and stored to the final compound file.
      * @param p - packer object which packs and unpacks pairs (position:line length)from packed long value.
@@ -42,74 +154,45 @@ public class Combiner {
      * @throws IOException
      */
     public File mergeToOne (File first, File second, Packer p) throws IOException {
-        File f = File.createTempFile("arsMERGE_", null);
-        f.deleteOnExit();
-        try(DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
-            DataInputStream dis_1 = new DataInputStream(new BufferedInputStream(new FileInputStream(first)));
-            DataInputStream dis_2 = new DataInputStream(new BufferedInputStream(new FileInputStream(second)))){
+        long start = System.nanoTime();
+        File f = spills.create("arsMERGE_", first.length() + second.length(), Arrays.asList(first, second));
+        try(RunWriter dos = new RunWriter(f, p, RunWriter.DEFAULT_BUFFER);
+            RunReader dis_1 = new RunReader(first, p, RunReader.DEFAULT_BUFFER);
+            RunReader dis_2 = new RunReader(second, p, RunReader.DEFAULT_BUFFER)){
 
             final long EMPTY = Long.MAX_VALUE;
-            long l1 = EMPTY;
-            long l2 = EMPTY;
-            long dis_1_entries = dis_1.available() / 8;
-            long dis_2_entries = dis_2.available() / 8;
+            long l1 = dis_1.hasNext() ? dis_1.next() : EMPTY;
+            long l2 = dis_2.hasNext() ? dis_2.next() : EMPTY;
 
-            do{
-                if(l1 == EMPTY && dis_1_entries > 0){
-                    l1 = dis_1.readLong();
-                    --dis_1_entries;
-                }
-                if(l2 == EMPTY && dis_2_entries > 0){
-                    l2 = dis_2.readLong();
-                    --dis_2_entries;
-                }
-                if(p.getLength(l1) < p.getLength(l2)){
-                    dos.writeLong(l1);
-                    l1 = EMPTY;
+            while (l1 != EMPTY && l2 != EMPTY){
+                if(p.getLength(l1) <= p.getLength(l2)){
+                    dos.write(l1);
+                    l1 = dis_1.hasNext() ? dis_1.next() : EMPTY;
                 } else {
-                    dos.writeLong(l2);
-                    l2 = EMPTY;
+                    dos.write(l2);
+                    l2 = dis_2.hasNext() ? dis_2.next() : EMPTY;
                 }
-            } while ((dis_1_entries > 0 || l1 != EMPTY) && (dis_2_entries > 0 || l2 != EMPTY));
-            copyTheRest(dos, dis_1, dis_2, EMPTY, l1, l2, dis_1_entries, dis_2_entries);
+            }
+            copyTheRest(dos, dis_1, EMPTY, l1);
+            copyTheRest(dos, dis_2, EMPTY, l2);
         }
+        listener.merged(1, 2, f.length(), System.nanoTime() - start);
         return f;
     }
 
     /**
-     * Selects InputStream from which to copy the rest bytes to the OutputStream.
+     * Copies all rest values from source file to the target file.
      * Will be invoked when all long values from one file retrieved and another one still has long values.
-     * @param dos - target file stream.
-     * @param dis_1 - first file.
-     * @param dis_2 - second file.
-     * @param EMPTY - mark that value is already read.
-     * @param l1 - value from first file.
-     * @param l2 - value from second file.
-     * @param dis_1_entries - number of values are still unread in the first file.
-     * @param dis_2_entries - number of values are still unread in the second file.
-     * @throws IOException
-     */
-    private void copyTheRest (DataOutputStream dos, DataInputStream dis_1, DataInputStream dis_2, long EMPTY, long l1, long l2, long dis_1_entries, long dis_2_entries) throws IOException {
-        if (dis_1_entries <= 0 && dis_2_entries >= 0){
-            copyAllBytes(dos, dis_2, EMPTY, l2);
-        }
-        if(dis_1_entries >= 0 && dis_2_entries <= 0){
-            copyAllBytes(dos, dis_1, EMPTY, l1);
-        }
-    }
-
-    /**
-     * Copies all rest bytes from source file to the target file.
      * @param dos - target file.
      * @param dis - source file.
      * @param EMPTY - mark that value is already read.
      * @param l - value which is already read from source file, but not yet written to the target file.
      * @throws IOException
      */
-    private void copyAllBytes (DataOutputStream dos, DataInputStream dis, long EMPTY, long l) throws IOException {
-        if (l != EMPTY) dos.writeLong(l);
-        byte[] buffer = new byte[dis.available()];
-        int readBytes = dis.read(buffer);
-        dos.write(Arrays.copyOfRange(buffer,0, readBytes));
+    private void copyTheRest (RunWriter dos, RunReader dis, long EMPTY, long l) throws IOException {
+        if (l != EMPTY) dos.write(l);
+        while (dis.hasNext()){
+            dos.write(dis.next());
+        }
     }
 }
@@ -9,8 +9,10 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 
 /**
  * Copies lines from source to destination.
@@ -19,42 +21,373 @@ import java.util.Map;
  * @version 1.0
  */
 public class Copier {
+    public static final String DEFAULT_SEPARATOR = "\r\n";         //written after each line unless other one is given.
+    private static final long PARTITION = 32 * 1024 * 1024;        //bytes of result file copied by one task.
+    private static final int PARTITION_ENTRIES = 1 << 20;           //maximal number of lines copied by one task.
+    private static final int STAGE = 4 * 1024 * 1024;               //bytes collected before each positional write.
+    private static final int MIN_ENTRIES = 64 * 1024;
     int boundary = Integer.MAX_VALUE;       //buffer size
+    private SortListener listener = SortListener.NONE;
+
+    /**
+     * @param listener - listener of copied bytes, told once per copy or per partition of parallel copy.
+     */
+    public void setListener (SortListener listener){
+        this.listener = listener;
+    }
+
     /**
      * Copies lines from source file to destination using direct byte buffers of NIO.
      * @param args - argument list
-     * @param reference - file with long values pointing to the beginning and length of each line.
+     * @param reference - run file with long values pointing to the beginning and length of each line.
      * @param p - packer to unpack position/length from the composed long value.
      * @return - result file.
      * @throws IOException
      */
     public Path directCopy (String[] args, File reference, Packer p) throws IOException {
-        Path result = Files.createFile(Paths.get(args[1])).toAbsolutePath();
-        try(RandomAccessFile raf = new RandomAccessFile(args[0], "r");
-            FileChannel fcRef = FileChannel.open(reference.toPath(), StandardOpenOption.READ);
+        try(RunReader ref = new RunReader(reference, p, RunReader.DEFAULT_BUFFER)){
+            return directCopy(args, ref, p);
+        }
+    }
+
+    /**
+     * Copies lines from source file to destination in order of reference using direct byte buffers of NIO.
+     * @param args - argument list
+     * @param ref - sorted reference to lines, held in memory or read from run file.
+     * @param p - packer to unpack position/length from the composed long value.
+     * @return - result file.
+     * @throws IOException
+     */
+    public Path directCopy (String[] args, Reference ref, Packer p) throws IOException {
+        return directCopy(Paths.get(args[0]), Paths.get(args[1]), separator(args[2]), ref, p);
+    }
+
+    /**
+     * Copies lines from source file to destination in order of reference using direct byte buffers of NIO.
+     * @param source - source file.
+     * @param destination - result file, should not exist.
+     * @param separator - bytes written after each line.
+     * @param ref - sorted reference to lines, held in memory or read from run file.
+     * @param p - packer to unpack position/length from the composed long value.
+     * @return - result file.
+     * @throws IOException
+     */
+    public Path directCopy (Path source, Path destination, byte[] separator, Reference ref, Packer p) throws IOException {
+        long start = System.nanoTime();
+        Path result = Files.createFile(destination).toAbsolutePath();
+        try(RandomAccessFile raf = new RandomAccessFile(source.toFile(), "r");
             FileChannel fcResult = FileChannel.open(result, StandardOpenOption.READ, StandardOpenOption.WRITE)){
 
+            long entries = ref.count();
             MappedByteBuffer src = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
-            MappedByteBuffer ref = fcRef.map(FileChannel.MapMode.READ_ONLY, 0, fcRef.size());
-            MappedByteBuffer res = fcResult.map(FileChannel.MapMode.READ_WRITE, 0, raf.length() + 2);
+            MappedByteBuffer res = fcResult.map(FileChannel.MapMode.READ_WRITE, 0, raf.length() + entries * separator.length);
 
-            byte[] bb = new byte[longestLineLength(reference, p)];
+            byte[] bb = new byte[ref.maxLength()];
             int position = 0;
             int length = 0;
 
-            while(ref.hasRemaining()){
-                long value = ref.getLong();
+            while(ref.hasNext()){
+                long value = ref.next();
                 position = (int) p.getPosition(value);
                 length = p.getLength(value);
                 src.position(position);
                 src.get(bb, 0, length);
                 res.put(bb, 0, length);
-                res.put("\r\n".getBytes(args[2]));
+                res.put(separator);
+            }
+            res.force();
+            fcResult.truncate(res.position());                                      //"\r\n" terminators of source may be shorter or longer than separator.
+            listener.copied(res.position(), entries, System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Appends lines which could not be packed to the end of result file, they are longer than all packed lines.
+     * Each line is transferred from source to result by the file system, without copying to java heap.
+     * @param args - argument list
+     * @param wide - lines which could not be packed.
+     * @throws IOException
+     */
+    public void appendWide (String[] args, WideRecords wide) throws IOException {
+        appendWide(Paths.get(args[0]), Paths.get(args[1]), separator(args[2]), wide);
+    }
+
+    /**
+     * Appends lines which could not be packed to the end of result file, they are longer than all packed lines.
+     * @param source - source file.
+     * @param destination - result file.
+     * @param lineSeparator - bytes written after each line.
+     * @param wide - lines which could not be packed.
+     * @throws IOException
+     */
+    public void appendWide (Path source, Path destination, byte[] lineSeparator, WideRecords wide) throws IOException {
+        if(wide.isEmpty()){
+            return;
+        }
+        long start = System.nanoTime();
+        long bytes = 0;
+        ByteBuffer separator = ByteBuffer.wrap(lineSeparator);
+        try(FileChannel src = FileChannel.open(source, StandardOpenOption.READ);
+            FileChannel res = FileChannel.open(destination, StandardOpenOption.WRITE, StandardOpenOption.APPEND)){
+            for(long[] record : wide.sorted()){
+                long position = record[0];
+                long end = record[0] + record[1];
+                while (position < end){
+                    position += src.transferTo(position, end - position, res);
+                }
+                separator.rewind();
+                while (separator.hasRemaining()){
+                    res.write(separator);
+                }
+                bytes += record[1] + separator.limit();
+            }
+        }
+        listener.copied(bytes, wide.size(), System.nanoTime() - start);
+    }
+
+    /**
+     * Copies lines from source file to destination concurrently.
+     * Reference is read sequentially and cut to the partitions of about PARTITION bytes of result file,
+     * output offset of each partition is the prefix sum of lengths of all previous lines plus their separators.
+     * Partitions are copied by the pool threads to the disjoint regions of result file by positional writes,
+     * so there is no need to know the size of result file in advance.
+     * @param args - argument list
+     * @param ref - sorted reference to lines.
+     * @param p - packer to unpack position/length from the composed long value.
+     * @param concurrencyLevel - number of threads which copy partitions.
+     * @return - result file.
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public Path parallelCopy (String[] args, Reference ref, Packer p, int concurrencyLevel)
+            throws IOException, InterruptedException, ExecutionException {
+        return parallelCopy(args, ref, p, concurrencyLevel, PARTITION, false);
+    }
+
+    /**
+     * Copies lines from source file to destination concurrently (see above).
+     * @param source - source file.
+     * @param destination - result file, should not exist.
+     * @param separator - bytes written after each line.
+     * @param ref - sorted reference to lines.
+     * @param p - packer to unpack position/length from the composed long value.
+     * @param concurrencyLevel - number of threads which copy partitions.
+     * @return - result file.
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public Path parallelCopy (Path source, Path destination, byte[] separator, Reference ref, Packer p, int concurrencyLevel)
+            throws IOException, InterruptedException, ExecutionException {
+        return parallelCopy(source, destination, separator, ref, p, concurrencyLevel, PARTITION, false);
+    }
+
+    /**
+     * Copies lines from source file to destination concurrently, partition by partition.
+     * In gather mode each partition (window of result file) is copied in order of line positions in the source file
+     * to the reorder buffer of window size, and then the whole buffer is written sequentially.
+     * So reading of source file much larger than RAM turns from random page faults to the mostly sequential sweeps.
+     * @param args - argument list
+     * @param ref - sorted reference to lines.
+     * @param p - packer to unpack position/length from the composed long value.
+     * @param concurrencyLevel - number of threads which copy partitions.
+     * @param window - maximal number of bytes of result file copied by one task, unless one line is longer.
+     * @param gather - true to reorder reads of each window by source position.
+     * @return - result file.
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public Path parallelCopy (String[] args, Reference ref, Packer p, int concurrencyLevel, long window, boolean gather)
+            throws IOException, InterruptedException, ExecutionException {
+        return parallelCopy(Paths.get(args[0]), Paths.get(args[1]), separator(args[2]), ref, p, concurrencyLevel, window, gather);
+    }
+
+    /**
+     * Copies lines from source file to destination concurrently, partition by partition (see above).
+     * @param source - source file.
+     * @param destination - result file, should not exist.
+     * @param separator - bytes written after each line.
+     * @param ref - sorted reference to lines.
+     * @param p - packer to unpack position/length from the composed long value.
+     * @param concurrencyLevel - number of threads which copy partitions.
+     * @param window - maximal number of bytes of result file copied by one task, unless one line is longer.
+     * @param gather - true to reorder reads of each window by source position.
+     * @return - result file.
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public Path parallelCopy (Path source, Path destination, byte[] separator, Reference ref, Packer p,
+                              int concurrencyLevel, long window, boolean gather)
+            throws IOException, InterruptedException, ExecutionException {
+        Path result = Files.createFile(destination).toAbsolutePath();
+        MappedSource mapped = new MappedSource(source);
+        int threads = Math.max(concurrencyLevel, 1);
+        BlockingQueue<long[]> free = new ArrayBlockingQueue<>(threads * 2);
+        window = Math.min(Math.max(window, STAGE), Integer.MAX_VALUE - 8);
+        int entries = gather ? (int)Math.max(MIN_ENTRIES, Math.min(window / 64, PARTITION_ENTRIES * 4)) : PARTITION_ENTRIES;
+        for(int i = 0; i < threads * 2; i++){
+            free.add(new long[entries]);
+        }
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        CompletionService<Void> tasks = new ExecutorCompletionService<>(service);
+        int submitted = 0;
+        try(FileChannel fc = FileChannel.open(result, StandardOpenOption.WRITE)){
+            long offset = 0;
+            long next = 0;
+            boolean held = false;                   //line which does not fit the previous window is held for the next one.
+            while (held || ref.hasNext()){
+                long[] metas = free.take();
+                int count = 0;
+                long bytes = 0;
+                while (count < metas.length && (held || ref.hasNext())){
+                    long value = held ? next : ref.next();
+                    long entry = p.getLength(value) + separator.length;
+                    if(count > 0 && bytes + entry > window){
+                        next = value;
+                        held = true;
+                        break;
+                    }
+                    held = false;
+                    metas[count++] = value;
+                    bytes += entry;
+                }
+                final int size = count;
+                final long start = offset;
+                final long length = bytes;
+                if(gather && length <= window){
+                    tasks.submit(() -> gatherPartition(metas, size, start, (int)length, mapped.duplicate(), fc, separator, p, free));
+                } else {
+                    if(gather){
+                        listener.gatherRefused(length, size);
+                    }
+                    tasks.submit(() -> copyPartition(metas, size, start, mapped.duplicate(), fc, separator, p, free));
+                }
+                submitted++;
+                offset += bytes;
+                Future<Void> done;
+                while ((done = tasks.poll()) != null){
+                    done.get();
+                    submitted--;
+                }
             }
+            for(; submitted > 0; submitted--){
+                tasks.take().get();
+            }
+            fc.truncate(offset);
+        } finally {
+            service.shutdownNow();
         }
         return result;
     }
 
+    /**
+     * Copies lines of one partition through the staging buffer to the result file.
+     * @param metas - packed values of partition, returned to the pool of free arrays at the end.
+     * @param offset - position of the first line of partition in result file.
+     * @return nothing.
+     * @throws IOException
+     */
+    private Void copyPartition (long[] metas, int size, long offset, MappedSource src, FileChannel fc,
+                                byte[] separator, Packer p, BlockingQueue<long[]> free) throws IOException {
+        long start = System.nanoTime();
+        long first = offset;
+        try {
+            byte[] stage = new byte[STAGE];
+            int used = 0;
+            for(int i = 0; i < size; i++){
+                int length = p.getLength(metas[i]);
+                int entry = length + separator.length;
+                if(used + entry > stage.length){
+                    offset = write(fc, stage, used, offset);
+                    used = 0;
+                    if(entry > stage.length){
+                        stage = new byte[entry];
+                    }
+                }
+                src.get(p.getPosition(metas[i]), stage, used, length);
+                System.arraycopy(separator, 0, stage, used + length, separator.length);
+                used += entry;
+            }
+            offset = write(fc, stage, used, offset);
+        } finally {
+            free.add(metas);
+        }
+        listener.copied(offset - first, size, System.nanoTime() - start);
+        return null;
+    }
+
+    /**
+     * Copies lines of one window in order of their positions in source file.
+     * Each line gets its offset in the reorder buffer from the prefix sum of lengths in order of reference,
+     * then lines are read in order of source positions, which are packed together with line indexes
+     * to the long keys and sorted, so the source is swept in one direction.
+     * If positions and indexes do not fit to one long key together, window is copied in order of reference.
+     * @param metas - packed values of window, returned to the pool of free arrays at the end.
+     * @param offset - position of the first line of window in result file.
+     * @param length - size of window in bytes.
+     * @return nothing.
+     * @throws IOException
+     */
+    private Void gatherPartition (long[] metas, int size, long offset, int length, MappedSource src, FileChannel fc,
+                                  byte[] separator, Packer p, BlockingQueue<long[]> free) throws IOException {
+        int indexBits = 32 - Integer.numberOfLeadingZeros(Math.max(size - 1, 1));
+        if(p.major() + indexBits > 63){
+            listener.gatherRefused(length, size);
+            return copyPartition(metas, size, offset, src, fc, separator, p, free);
+        }
+        long start = System.nanoTime();
+        try {
+            int[] targets = new int[size];
+            long[] keys = new long[size];
+            int target = 0;
+            for(int i = 0; i < size; i++){
+                targets[i] = target;
+                target += p.getLength(metas[i]) + separator.length;
+                keys[i] = (p.getPosition(metas[i]) << indexBits) | i;
+            }
+            Arrays.sort(keys);
+            byte[] reorder = new byte[length];
+            long indexMask = (1L << indexBits) - 1;
+            for(long key : keys){
+                int i = (int)(key & indexMask);
+                int lineLength = p.getLength(metas[i]);
+                src.get(key >>> indexBits, reorder, targets[i], lineLength);
+                System.arraycopy(separator, 0, reorder, targets[i] + lineLength, separator.length);
+            }
+            write(fc, reorder, length, offset);
+        } finally {
+            free.add(metas);
+        }
+        listener.copied(length, size, System.nanoTime() - start);
+        return null;
+    }
+
+    /**
+     * @param charset - name of charset of source file given by command line.
+     * @return - default separator encoded by charset.
+     * @throws UnsupportedEncodingException
+     */
+    private static byte[] separator (String charset) throws UnsupportedEncodingException {
+        return DEFAULT_SEPARATOR.getBytes(charset);
+    }
+
+    /**
+     * Writes bytes to the result file at the given position.
+     * @return - position next to the written bytes.
+     * @throws IOException
+     */
+    private static long write (FileChannel fc, byte[] bytes, int length, long position) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes, 0, length);
+        while (buf.hasRemaining()){
+            position += fc.write(buf, position);
+        }
+        return position;
+    }
+
     /**
      * Creates list of MappedByteBuffers mapped to the appropriate regions of source file.
      * @param source - source file.
@@ -85,123 +418,113 @@ public class Copier {
         return list;
     }
 
-    /**
-     * Creates list of MappedByteBuffers mapped to the consecutive regions of result file.
-     * @param args - command-line argument list.
-     * @param sources - list of MappedByteBuffers mapped to the source file.
-     * @return - list of MappedByteBuffers.
-     * @throws IOException
-     */
-    private List<MappedByteBuffer> resultBuffers (String[] args,List<MappedByteBuffer> sources) throws IOException {
-        List<MappedByteBuffer> results = new ArrayList<>(sources.size());
-        Path file = Files.createFile(Paths.get(args[1])).toAbsolutePath();
-        try(FileChannel fc = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)){
-            MappedByteBuffer r;
-            for(int i = 0; i < sources.size(); i++){
-                long position = i * (long)boundary;
-                if(sources.get(i).capacity() < boundary){
-                    r = fc.map(FileChannel.MapMode.READ_WRITE, position, sources.get(i).capacity() + 2);
-                } else {
-                    r = fc.map(FileChannel.MapMode.READ_WRITE, position, sources.get(i).capacity());
-                }
-                results.add(r);
-            }
-        }
-        return results;
-    }
-
     /**
      * Retrieves lines from source file and saves it to the final one.
-     * Source and result files are divided to the appropriate number of MappedByteBuffers.
+     * Source file is divided to the appropriate number of MappedByteBuffers.
      * On each iteration of while cycle:
      * 1) long value are read from reference file, position and length of each line determined.
      * 2) according to the offset of line in source file appropriate MappedByteBuffer will be chosen.
      * 2.1) if line starts at one buffer and finishes at the next one, then line will be read in two steps
      * 2.1.1) first chunk will be read from current source buffer
      * 2.1.2) second chunk will be read from the next source buffer
-     * 3) each line will be saved to the current result MappedByteBuffer.
+     * 3) each line will be saved to the current window of result file (see {@link WindowedOutput}).
      * @param args - command-line arguments.
-     * @param reference - file which contains sorted long values that are reference to lines in source file.
+     * @param reference - run file which contains sorted long values that are reference to lines in source file.
      * @param p - packer object.
      * @throws IOException
      */
     public void multiBufferDirectCopy (String[] args, File reference, Packer p) throws IOException {
-        List<MappedByteBuffer> sources = sourceBuffers(new File(args[0]));
-        List<MappedByteBuffer> results = resultBuffers(args, sources);
-        byte[] separator = System.getProperty("line.separator").getBytes(args[2]);
-        try(FileChannel fcRef = FileChannel.open(reference.toPath(), StandardOpenOption.READ)){
-
-            byte[] buf = new byte[longestLineLength(reference, p)];
-            long position;
-            int length;
-
-            MappedByteBuffer src;
-            MappedByteBuffer res = results.get(0);
-            MappedByteBuffer ref = fcRef.map(FileChannel.MapMode.READ_ONLY, 0, fcRef.size());
-
-            while(ref.hasRemaining()){
-                long value = ref.getLong();
-                position = p.getPosition(value);
-                int relativePosition = (int)(position % (long)boundary);                    //calculates position of line relative to the start of current buffer.
-                length = p.getLength(value);
-                int ordinal = (int)(position / boundary);                                   //calculates which buffer from list to choose.
-                src = sources.get(ordinal);                                                 //gets appropriate source MappedByteBuffer.
-
-                if(((long)relativePosition + (long)length) > src.limit()){                  //if line lies on boundary of two consecutive buffers.
-                    src.position(relativePosition);
-                    int firstChunk = src.limit() - relativePosition;                        //calculates length of first chunk which fits to the limit of current buffer.
-                    int secondChunk = length - firstChunk;
-                    //first chunk read & writing
-                    src.get(buf, 0, firstChunk);
-                    res = putToResultBuffer(results, res, buf, firstChunk);
-                    //second chunk read & writing
-                    src = sources.get(ordinal + 1);
-                    src.position(0);
-                    src.get(buf, 0, secondChunk);
-                    res = putToResultBuffer(results, res, buf, secondChunk);
-                    res = putToResultBuffer(results, res, separator, separator.length);     //saves line.separator at the end of line.
-                } else {
-                    src.position(relativePosition);
-                    src.get(buf, 0, length);
-                    res = putToResultBuffer(results, res, buf, length);
-                    res = putToResultBuffer(results, res, separator, separator.length);
-                }
-            }
-            res.force();
+        try(RunReader ref = new RunReader(reference, p, RunReader.DEFAULT_BUFFER)){
+            multiBufferDirectCopy(args, ref, p);
         }
-        return;
-    }
-
-    /**
-     * Saves bytes from byte buffer to the appropriate MappedByteBuffer mapped to the result file.
-     * In case of current buffer has no enough room to save whole line, the line will be divided into two chunks.
-     * First chunk will be written to the current buffer, and the second chunk will be written to the next buffer.
-     * In that case new buffer will be returned as new current.
-     * @param results - list of MappedByteBuffers mapped to the some regions of the result file.
-     * @param current - current MappedByteBuffer to which lines will be written in.
-     * @param buffer - byte buffer which contains lines to be written in.
-     * @param length - length of line.
-     * @return - current MappedByteBuffer.
-     */
-    private MappedByteBuffer putToResultBuffer(List<MappedByteBuffer> results, MappedByteBuffer current, byte[] buffer, int length){
-        MappedByteBuffer internal = current;
-        int index = results.indexOf(current);
-        if(internal.position() + (long)length > internal.limit()){              //if the line longer than the current buffer length.
-            int firstChunk = internal.limit() - internal.position();            //calculates first chunk length
-            internal.put(buffer, 0, firstChunk);                                // saves first chun to the current MappedByteBuffer
-            internal = results.get(index + 1);                                  // assigns to the internal reference to the next MappedByteBuffer
-            internal.position(0);                                               // sets position of new buffer to the 0;
-            internal.put(buffer, firstChunk, length - firstChunk);              // saves second chunk to the new buffer.
-        } else {
-            internal.put(buffer, 0, length);                                    //if line fits to the current buffer
+    }
+
+    /**
+     * Retrieves lines from source file in order of reference and saves it to the final one.
+     * @param args - command-line arguments.
+     * @param ref - sorted reference to lines, held in memory or read from run file.
+     * @param p - packer object.
+     * @throws IOException
+     */
+    public void multiBufferDirectCopy (String[] args, Reference ref, Packer p) throws IOException {
+        multiBufferDirectCopy(args, ref, p, WindowedOutput.DEFAULT_SIZE, WindowedOutput.DEFAULT_WINDOWS);
+    }
+
+    /**
+     * Retrieves lines from source file in order of reference and saves it to the final one
+     * through the bounded number of output windows.
+     * @param args - command-line arguments.
+     * @param ref - sorted reference to lines, held in memory or read from run file.
+     * @param p - packer object.
+     * @param windowSize - size of each output window in bytes.
+     * @param windows - number of output windows.
+     * @throws IOException
+     */
+    public void multiBufferDirectCopy (String[] args, Reference ref, Packer p, int windowSize, int windows) throws IOException {
+        multiBufferDirectCopy(Paths.get(args[0]), Paths.get(args[1]), separator(args[2]), ref, p, windowSize, windows);
+    }
+
+    /**
+     * Retrieves lines from source file in order of reference and saves it to the final one
+     * through the bounded number of output windows.
+     * @param source - source file.
+     * @param destination - result file, should not exist.
+     * @param separator - bytes written after each line.
+     * @param ref - sorted reference to lines, held in memory or read from run file.
+     * @param p - packer object.
+     * @param windowSize - size of each output window in bytes.
+     * @param windows - number of output windows.
+     * @throws IOException
+     */
+    public void multiBufferDirectCopy (Path source, Path destination, byte[] separator, Reference ref, Packer p,
+                                       int windowSize, int windows) throws IOException {
+        long start = System.nanoTime();
+        long entries = ref.count();
+        List<MappedByteBuffer> sources = sourceBuffers(source.toFile());
+        Path result = Files.createFile(destination).toAbsolutePath();
+        try(FileChannel fc = FileChannel.open(result, StandardOpenOption.WRITE);
+            WindowedOutput res = new WindowedOutput(fc, windowSize, windows)){
+            copyLines(ref, p, sources, separator, res);
         }
-        return internal;
+        listener.copied(Files.size(result), entries, System.nanoTime() - start);
     }
 
-    private int longestLineLength(File reference, Packer p) throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(reference, "r")){
-            raf.seek(raf.length() - 8);
-            return p.getLength(raf.readLong());
+    /**
+     * Copies lines in order of reference from source buffers to the output windows.
+     * @throws IOException
+     */
+    private void copyLines (Reference ref, Packer p, List<MappedByteBuffer> sources, byte[] separator,
+                            WindowedOutput res) throws IOException {
+        byte[] buf = new byte[ref.maxLength()];
+        long position;
+        int length;
+
+        MappedByteBuffer src;
+
+        while(ref.hasNext()){
+            long value = ref.next();
+            position = p.getPosition(value);
+            int relativePosition = (int)(position % (long)boundary);                    //calculates position of line relative to the start of current buffer.
+            length = p.getLength(value);
+            int ordinal = (int)(position / boundary);                                   //calculates which buffer from list to choose.
+            src = sources.get(ordinal);                                                 //gets appropriate source MappedByteBuffer.
+
+            if(((long)relativePosition + (long)length) > src.limit()){                  //if line lies on boundary of two consecutive buffers.
+                src.position(relativePosition);
+                int firstChunk = src.limit() - relativePosition;                        //calculates length of first chunk which fits to the limit of current buffer.
+                int secondChunk = length - firstChunk;
+                //first chunk read
+                src.get(buf, 0, firstChunk);
+                //second chunk read
+                src = sources.get(ordinal + 1);
+                src.position(0);
+                src.get(buf, firstChunk, secondChunk);
+            } else {
+                src.position(relativePosition);
+                src.get(buf, 0, length);
+            }
+            res.put(buf, 0, length);
+            res.put(separator, 0, separator.length);                                    //saves separator at the end of line.
         }
     }
 }
@@ -0,0 +1,236 @@
+package com.sapashev;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Sorts source file by counting sort of line lengths in two passes without any temp file.
+ * 1) first pass builds histogram of line lengths for each range of source file.
+ * 2) prefix sum over histograms gives exact offset in the result file for each length in each range.
+ * 3) second pass scatters every line directly to its final position in the result file.
+ * Ranges are processed concurrently, lines of equal length keep order of their positions.
+ * Histogram and offsets of each range are tables indexed by length, they are counted in memory budget:
+ * half of budget is left for them, the rest is shared by batches of packed values.
+ * Sorting is refused (nothing is written) if some line is longer than MAX_LENGTH bytes or than tables
+ * allowed by budget, or could not be packed.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class CountingSorter {
+    public static final int MAX_LENGTH = 1 << 20;          //longest line which could be counted by histogram.
+    private static final int STAGE = 1 << 20;              //size of buffer collecting lines of one length before write.
+    private static final int TABLES = 2;                   //histogram and offsets of each range.
+    private final Path source;
+    private final Packer packer;
+    private final byte[] separator;
+    private final MemoryBudget budget;
+    private final int concurrencyLevel;
+    private SortListener listener = SortListener.NONE;
+
+    /**
+     * @param source - source file.
+     * @param packer - packer object which packs pairs (position:line length) to the long value.
+     * @param separator - bytes to be written after each line.
+     * @param budget - memory which may be spent on length tables, buffers and sort scratch arrays of all threads.
+     * @param concurrencyLevel - maximal number of ranges processed concurrently.
+     */
+    public CountingSorter(Path source, Packer packer, byte[] separator, MemoryBudget budget, int concurrencyLevel){
+        this.source = source;
+        this.packer = packer;
+        this.separator = separator;
+        this.budget = budget;
+        this.concurrencyLevel = Math.max(concurrencyLevel, 1);
+    }
+
+    /**
+     * @param listener - listener of scan and copy phases, scanned and copied bytes.
+     */
+    public void setListener (SortListener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * Sorts lines of source file to the destination file.
+     * Counting pass is reported to the listener as SCAN phase, scattering pass as COPY phase.
+     * @param destination - result file, should not exist.
+     * @return - false if lines are too long to be counted and destination has not been created.
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public boolean sort (Path destination) throws IOException, InterruptedException, ExecutionException {
+        long[] bounds = RunGenerator.ranges(source, concurrencyLevel);
+        int parts = bounds.length - 1;
+        int maxLength = (int)Math.min(MAX_LENGTH, budget.bytes() / 2 / ((long)parts * TABLES * Long.BYTES));
+        int scanBatch = budget.share(2).entries(Long.BYTES, parts);
+        ExecutorService service = Executors.newFixedThreadPool(parts);
+        try {
+            List<Callable<long[]>> counters = new ArrayList<>(parts);
+            for(int i = 0; i < parts; i++){
+                final long from = bounds[i];
+                final long to = bounds[i + 1];
+                counters.add(() -> histogram(from, to, scanBatch, maxLength));
+            }
+            List<long[]> histograms = new ArrayList<>(parts);
+            int lengths = 0;
+            PhaseTimer timer = PhaseTimer.start(listener, SortListener.Phase.SCAN);
+            try {
+                for(Future<long[]> f : service.invokeAll(counters)){
+                    long[] histogram = f.get();
+                    if(histogram == null){
+                        return false;
+                    }
+                    histograms.add(histogram);
+                    lengths = Math.max(lengths, histogram.length);
+                }
+            } finally {
+                timer.stop();
+            }
+
+            int batch = new MemoryBudget(budget.bytes() - (long)parts * TABLES * lengths * Long.BYTES)
+                    .entries(Long.BYTES, parts * 2);
+            long[][] offsets = new long[parts][lengths];
+            long total = 0;
+            for(int length = 0; length < lengths; length++){
+                for(int i = 0; i < parts; i++){
+                    long[] histogram = histograms.get(i);
+                    offsets[i][length] = total;
+                    if(length < histogram.length){
+                        total += histogram[length] * (length + separator.length);
+                    }
+                }
+            }
+
+            Files.createFile(destination);
+            try(RandomAccessFile raf = new RandomAccessFile(destination.toFile(), "rw")){
+                raf.setLength(total);
+            }
+            MappedSource src = new MappedSource(source);
+            timer = PhaseTimer.start(listener, SortListener.Phase.COPY);
+            try(FileChannel fc = FileChannel.open(destination, StandardOpenOption.WRITE)){
+                List<Callable<Void>> scatters = new ArrayList<>(parts);
+                for(int i = 0; i < parts; i++){
+                    final long from = bounds[i];
+                    final long to = bounds[i + 1];
+                    final long[] rangeOffsets = offsets[i];
+                    scatters.add(() -> scatter(from, to, batch, rangeOffsets, src.duplicate(), fc));
+                }
+                for(Future<Void> f : service.invokeAll(scatters)){
+                    f.get();
+                }
+            } finally {
+                timer.stop();
+            }
+        } finally {
+            service.shutdownNow();
+        }
+        return true;
+    }
+
+    /**
+     * First pass: counts lines of each length in the range.
+     * @param maxLength - lines of this length and longer could not be counted.
+     * @return - array where index is line length and value is number of lines, or null if some line is too long.
+     * @throws IOException
+     */
+    private long[] histogram (long from, long to, int batch, int maxLength) throws IOException {
+        long[] counts = new long[Math.min(1024, maxLength)];
+        int lengths = 0;
+        long[] metas = new long[batch];
+        WideRecords wide = new WideRecords();
+        try(ByteScanner scanner = new ByteScanner(source, from, to, ByteScanner.DEFAULT_WINDOW, wide)){
+            while (!scanner.isEOF()){
+                long position = scanner.position();
+                int count = scanner.scan(metas, batch, packer);
+                listener.scanned(scanner.position() - position, count);
+                if(!wide.isEmpty()){
+                    return null;
+                }
+                for(int i = 0; i < count; i++){
+                    int length = packer.getLength(metas[i]);
+                    if(length >= maxLength){
+                        return null;
+                    }
+                    if(length >= counts.length){
+                        long[] wider = new long[Math.min(Math.max(length + 1, counts.length * 2), maxLength)];
+                        System.arraycopy(counts, 0, wider, 0, counts.length);
+                        counts = wider;
+                    }
+                    counts[length]++;
+                    lengths = Math.max(lengths, length + 1);
+                }
+            }
+        }
+        long[] result = new long[lengths];
+        System.arraycopy(counts, 0, result, 0, lengths);
+        return result;
+    }
+
+    /**
+     * Second pass: writes every line of the range to its final position.
+     * Each batch of lines is sorted by length, so lines of one length in the batch occupy consecutive region
+     * of the result file and are written by one positional write.
+     * @param offsets - position in result file of the next line of each length, advanced while writing.
+     * @param src - source file view of this thread.
+     * @param fc - result file channel, shared by all threads.
+     * @return nothing.
+     * @throws IOException
+     */
+    private Void scatter (long from, long to, int batch, long[] offsets, MappedSource src, FileChannel fc) throws IOException {
+        long[] metas = new long[batch];
+        byte[] stage = new byte[STAGE];
+        try(Sorter sorter = new Sorter();
+            ByteScanner scanner = new ByteScanner(source, from, to, ByteScanner.DEFAULT_WINDOW)){
+            while (!scanner.isEOF()){
+                long started = System.nanoTime();
+                long copied = 0;
+                int count = scanner.scan(metas, batch, packer);
+                sorter.sort(metas, count, packer);
+                int i = 0;
+                while (i < count){
+                    int length = packer.getLength(metas[i]);
+                    int entry = length + separator.length;
+                    long start = offsets[length];
+                    long first = start;
+                    int used = 0;
+                    for(; i < count && packer.getLength(metas[i]) == length; i++){
+                        if(used + entry > stage.length){
+                            if(used > 0){
+                                write(fc, stage, used, start);
+                                start += used;
+                                used = 0;
+                            }
+                            if(entry > stage.length){
+                                stage = new byte[entry];
+                            }
+                        }
+                        src.get(packer.getPosition(metas[i]), stage, used, length);
+                        System.arraycopy(separator, 0, stage, used + length, separator.length);
+                        used += entry;
+                    }
+                    write(fc, stage, used, start);
+                    offsets[length] = start + used;
+                    copied += offsets[length] - first;
+                }
+                listener.copied(copied, count, System.nanoTime() - started);
+            }
+        }
+        return null;
+    }
+
+    private static void write (FileChannel fc, byte[] bytes, int length, long position) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes, 0, length);
+        while (buf.hasRemaining()){
+            position += fc.write(buf, position);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.sapashev;
+
+/**
+ * Describes algorithm used to sort source file.
+ * MERGE - sorted runs are saved to the temp files, merged to the reference file and lines are copied by reference.
+ * COUNTING - lines are scattered directly to their final positions by two-pass counting sort of lengths,
+ * falls back to MERGE if lines are too long to be counted.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public enum Engine {
+    MERGE,
+    COUNTING
+}
@@ -0,0 +1,475 @@
+package com.sapashev;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Sorts lines of file by length, may be embedded to the application and reused for many files:
+ * ExternalLineSorter.builder().source(in).destination(out).memory("512m").build().sort()
+ * Source and destination are files or channels. Files are sorted by reference: packed values (position:length)
+ * of lines are sorted and lines are copied from source at the end. Channel source could not be read by positions,
+ * so if source or destination is channel, lines are sorted with their bytes in streaming mode.
+ * Chooses how to sort by the size of source file and options:
+ * 1) shortest or longest lines are selected by one scan with bounded heaps (see {@link TopSelector});
+ * 2) lines ordered with secondary key or without duplicates are sorted as records with key prefixes
+ *    or fingerprints (see {@link KeyedSorter});
+ * 3) in COUNTING engine lines are scattered by two passes of counting sort (see {@link CountingSorter});
+ * 4) packed values of all lines are sorted in memory if they fit memory budget;
+ * 5) otherwise sorted runs are saved to temp files (see {@link RunGenerator}), natural runs are joined
+ *    and the rest are merged (see {@link MergeScheduler}).
+ * Lines which could not be packed are appended after all other lines (see {@link WideRecords}),
+ * their duplicates are dropped by byte comparison in distinct mode.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class ExternalLineSorter {
+    private static final long PARALLEL_COPY = 64 * 1024 * 1024;    //smaller files are copied by one thread.
+    private static final long MIN_WINDOW = 16 * 1024 * 1024;       //bounds of window of gather mode.
+    private static final long MAX_WINDOW = 256 * 1024 * 1024;
+    private static final int MERGES_PER_DEVICE = 2;                //concurrent merges allowed by bandwidth of one disk.
+    private final Path source;
+    private final ReadableByteChannel sourceChannel;
+    private final Path destination;
+    private final WritableByteChannel destinationChannel;
+    private final byte[] separator;
+    private final MemoryBudget budget;
+    private final int threads;
+    private final Packer layout;
+    private final SpillManager spills;
+    private final Engine engine;
+    private final Selection selection;
+    private final KeyOrder order;
+    private final SortListener listener;
+
+    private ExternalLineSorter(Builder b, KeyOrder order){
+        this.source = b.source;
+        this.sourceChannel = b.sourceChannel;
+        this.destination = b.destination;
+        this.destinationChannel = b.destinationChannel;
+        this.separator = b.separator != null ? b.separator : Copier.DEFAULT_SEPARATOR.getBytes(b.charset);
+        this.budget = b.budget;
+        this.threads = b.threads;
+        this.layout = b.packer;
+        this.spills = b.spills != null ? b.spills : SpillManager.defaultManager();
+        this.engine = b.engine;
+        this.selection = b.selection;
+        this.order = order;
+        this.listener = b.listener;
+    }
+
+    public static Builder builder (){
+        return new Builder();
+    }
+
+    /**
+     * Sorts lines of source to the destination. Destination file should not exist,
+     * channels given to the builder are not closed.
+     * Temp files are created by the session of spill manager, so those of them left by failed sort are deleted
+     * at the end, and temp files of other sorts sharing the same manager are not touched.
+     * @return - statistics of sort.
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public SortResult sort () throws IOException, InterruptedException, ExecutionException {
+        try(SpillManager session = spills.session()){
+            return sort(session);
+        }
+    }
+
+    private SortResult sort (SpillManager session) throws IOException, InterruptedException, ExecutionException {
+        SortResult.Collector collector = new SortResult.Collector(listener);
+        if(source == null || destination == null){
+            stream(collector, session);
+            return collector.result(SortResult.Mode.STREAM);
+        }
+        Packer packer = packer(Files.size(source));
+        if(selection != null && selection.isTop()){
+            TopSelector selector = new TopSelector(source, packer, selection, threads);
+            selector.setListener(collector);
+            LongArray selected;
+            PhaseTimer scan = PhaseTimer.start(collector, SortListener.Phase.SCAN);
+            try {
+                selected = selector.select();
+            } finally {
+                scan.stop();
+            }
+            PhaseTimer copy = PhaseTimer.start(collector, SortListener.Phase.COPY);
+            try(ArrayReference reference = new ArrayReference(selected, selected.size(), packer)){
+                copy(reference, packer, collector);
+                copier(collector).appendWide(source, destination, separator, selector.wideRecords());
+            } finally {
+                copy.stop();
+            }
+            return collector.result(SortResult.Mode.SELECT);
+        }
+        if(!order.isLengthOnly()){
+            KeyedSorter keyed = new KeyedSorter(source, packer, order, budget, threads, session, selection);
+            keyed.setListener(collector);
+            Reference sorted = keyed.sort();
+            PhaseTimer copy = PhaseTimer.start(collector, SortListener.Phase.COPY);
+            try(Reference reference = sorted){
+                copy(reference, packer, collector);
+                WideRecords wide = keyed.wideRecords();
+                copier(collector).appendWide(source, destination, separator, selection == null ? wide : selection.select(wide, 0));
+            } finally {
+                copy.stop();
+            }
+            return collector.result(SortResult.Mode.KEYED);
+        }
+        if(engine == Engine.COUNTING && selection == null){
+            CountingSorter counting = new CountingSorter(source, packer, separator, budget, threads);
+            counting.setListener(collector);
+            if(counting.sort(destination)){
+                return collector.result(SortResult.Mode.COUNTING);
+            }
+        }
+        RunGenerator generator = new RunGenerator(source, packer, budget, threads, session, selection);
+        generator.setListener(collector);
+        LongArray sorted;
+        PhaseTimer timer = PhaseTimer.start(collector, SortListener.Phase.SCAN);
+        try {
+            sorted = generator.sortInMemory();
+        } finally {
+            timer.stop();
+        }
+        if(sorted != null){
+            timer = PhaseTimer.start(collector, SortListener.Phase.COPY);
+            try(ArrayReference reference = new ArrayReference(sorted, sorted.size(), packer)){
+                copy(reference, packer, collector);
+                appendWide(generator, collector);
+            } finally {
+                timer.stop();
+            }
+            return collector.result(SortResult.Mode.IN_MEMORY);
+        }
+        List<File> temps;
+        timer = PhaseTimer.start(collector, SortListener.Phase.SCAN);
+        try {
+            temps = generator.generate();
+        } finally {
+            timer.stop();
+        }
+        collector.stages(generator.stages());
+        if(temps.isEmpty()){
+            Files.createFile(destination);
+            appendWide(generator, collector);
+            return collector.result(SortResult.Mode.MERGE);
+        }
+        File result;
+        timer = PhaseTimer.start(collector, SortListener.Phase.MERGE);
+        try {
+            Combiner combiner = new Combiner(session);
+            combiner.setListener(collector);
+            temps = combiner.joinNaturalRuns(temps, packer);
+            result = temps.size() == 1 ? temps.get(0) : createResultFile(temps, packer, collector, session);
+        } finally {
+            timer.stop();
+        }
+        timer = PhaseTimer.start(collector, SortListener.Phase.COPY);
+        try(RunReader reference = new RunReader(result, packer, RunReader.DEFAULT_BUFFER)){
+            copy(reference, packer, collector);
+            appendWide(generator, collector);
+        } finally {
+            timer.stop();
+        }
+        session.delete(result);
+        return collector.result(SortResult.Mode.MERGE);
+    }
+
+    /**
+     * Sorts in streaming mode (see {@link StreamSorter}), source is read only once.
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    private void stream (SortListener collector, SpillManager session) throws IOException, InterruptedException, ExecutionException {
+        StreamSorter sorter = new StreamSorter(budget, session, separator, KWayMerger.DEFAULT_FAN_IN);
+        sorter.setListener(collector);
+        InputStream in = source != null ? new FileInputStream(source.toFile()) : Channels.newInputStream(sourceChannel);
+        try {
+            OutputStream out = destination != null ? new FileOutputStream(destination.toFile())
+                    : Channels.newOutputStream(destinationChannel);
+            try {
+                sorter.sort(in, out);
+            } finally {
+                if(destination != null){
+                    out.close();
+                }
+            }
+        } finally {
+            if(source != null){
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Appends lines which could not be packed, only those of them which pass the length range if it is given.
+     * @throws IOException
+     */
+    private void appendWide (RunGenerator generator, SortListener collector) throws IOException {
+        WideRecords wide = generator.wideRecords();
+        copier(collector).appendWide(source, destination, separator, selection == null ? wide : selection.select(wide, 0));
+    }
+
+    /**
+     * Uses layout given to the builder if it addresses every byte of source file, otherwise chooses
+     * layout for the source file (see {@link Packer#forSource(long)}).
+     * @param size - size of source file in bytes.
+     * @return - packer.
+     */
+    private Packer packer (long size){
+        return layout != null && layout.addresses(size) ? layout : Packer.forSource(size);
+    }
+
+    /**
+     * Copies lines from source file to destination in order of reference.
+     * Small files are copied by one thread, larger ones are split to partitions copied concurrently.
+     * Source files larger than physical memory are copied by windows in gather mode, each thread holds
+     * reorder buffer of the equal share of memory budget.
+     * @param reference - sorted reference to lines.
+     * @param packer - packer object which unpacks pairs (position:line length) from packed long value.
+     * @throws IOException
+     */
+    private void copy (Reference reference, Packer packer, SortListener collector)
+            throws IOException, InterruptedException, ExecutionException {
+        Copier copier = copier(collector);
+        long size = Files.size(source);
+        if(size < PARALLEL_COPY){
+            copier.directCopy(source, destination, separator, reference, packer);
+        } else if(size > physicalMemory()){
+            long window = Math.max(MIN_WINDOW, Math.min(MAX_WINDOW, budget.bytes() / threads));
+            copier.parallelCopy(source, destination, separator, reference, packer, threads, window, true);
+        } else {
+            copier.parallelCopy(source, destination, separator, reference, packer, threads);
+        }
+    }
+
+    private static Copier copier (SortListener collector){
+        Copier copier = new Copier();
+        copier.setListener(collector);
+        return copier;
+    }
+
+    /**
+     * getTotalPhysicalMemorySize is deprecated since Java 14 in favour of getTotalMemorySize,
+     * which does not exist in Java 11 targeted by the project.
+     * @return - size of physical memory in bytes, or Long.MAX_VALUE if it is unknown.
+     */
+    @SuppressWarnings("deprecation")
+    private static long physicalMemory (){
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if(os instanceof com.sun.management.OperatingSystemMXBean){
+            return ((com.sun.management.OperatingSystemMXBean)os).getTotalPhysicalMemorySize();
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Merges temp files to the final one by the merge tree (see {@link MergeScheduler}).
+     * All threads may run merges, but not more than MERGES_PER_DEVICE merges per spill disk read and write
+     * at the same time.
+     * @param temps - list of temp files to combine.
+     * @param p - packer object which packs and unpacks pairs (position:line length)from packed long value.
+     * @return - final combined file, which contains sorted long values from all other temp files.
+     * @throws IOException
+     */
+    private File createResultFile (List<File> temps, Packer p, SortListener collector, SpillManager session)
+            throws IOException {
+        int maxMerges = MERGES_PER_DEVICE * session.devices();
+        MergeScheduler scheduler = new MergeScheduler(p, KWayMerger.DEFAULT_FAN_IN, maxMerges, budget, threads, session);
+        scheduler.setListener(collector);
+        File f = scheduler.merge(temps);
+        temps.clear();
+        return f;
+    }
+
+    /**
+     * Builder of sorter. Source and destination are required, other options have defaults:
+     * UTF-8 charset, 25% of heap as memory budget, all available processors, packer layout chosen by size of source,
+     * temp files in the default temp directory, MERGE engine, all lines ordered by length with duplicates and no listener.
+     */
+    public static class Builder {
+        private Path source;
+        private ReadableByteChannel sourceChannel;
+        private Path destination;
+        private WritableByteChannel destinationChannel;
+        private Charset charset = StandardCharsets.UTF_8;
+        private byte[] separator;
+        private MemoryBudget budget = MemoryBudget.parse("25%");
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private Packer packer;
+        private SpillManager spills;
+        private Engine engine = Engine.MERGE;
+        private Selection selection;
+        private KeyOrder order = KeyOrder.LENGTH;
+        private boolean distinct;
+        private SortListener listener = SortListener.NONE;
+
+        private Builder(){
+        }
+
+        public Builder source (Path source){
+            this.source = source;
+            this.sourceChannel = null;
+            return this;
+        }
+
+        /**
+         * @param source - channel which is read till the end in streaming mode.
+         */
+        public Builder source (ReadableByteChannel source){
+            this.sourceChannel = source;
+            this.source = null;
+            return this;
+        }
+
+        /**
+         * @param destination - result file, should not exist.
+         */
+        public Builder destination (Path destination){
+            this.destination = destination;
+            this.destinationChannel = null;
+            return this;
+        }
+
+        /**
+         * @param destination - channel which gets sorted lines in streaming mode.
+         */
+        public Builder destination (WritableByteChannel destination){
+            this.destinationChannel = destination;
+            this.destination = null;
+            return this;
+        }
+
+        /**
+         * @param charset - charset of source, should keep line feed as single byte (see {@link ByteScanner#isSupported(Charset)}).
+         */
+        public Builder charset (Charset charset){
+            this.charset = charset;
+            return this;
+        }
+
+        /**
+         * @param separator - bytes written after each line, "\r\n" in charset of source by default (see {@link Copier#DEFAULT_SEPARATOR}).
+         */
+        public Builder separator (byte[] separator){
+            this.separator = separator.clone();
+            return this;
+        }
+
+        public Builder memory (MemoryBudget budget){
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * @param budget - memory budget as "512m", "2g" or "25%" (see {@link MemoryBudget#parse(String)}).
+         */
+        public Builder memory (String budget){
+            return memory(MemoryBudget.parse(budget));
+        }
+
+        /**
+         * @param threads - number of threads which scan, sort, merge and copy.
+         */
+        public Builder threads (int threads){
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param packer - layout of packed values, replaced by layout chosen for source if it could not address source.
+         */
+        public Builder packer (Packer packer){
+            this.packer = packer;
+            return this;
+        }
+
+        public Builder spills (SpillManager spills){
+            this.spills = spills;
+            return this;
+        }
+
+        public Builder engine (Engine engine){
+            this.engine = engine;
+            return this;
+        }
+
+        /**
+         * @param selection - lines to be written instead of all of them, null for all lines.
+         */
+        public Builder selection (Selection selection){
+            this.selection = selection;
+            return this;
+        }
+
+        /**
+         * @param order - order of lines, lines with equal keys keep order of their positions.
+         */
+        public Builder order (KeyOrder order){
+            this.order = order;
+            return this;
+        }
+
+        /**
+         * @param distinct - true to keep only the first of equal lines, then lines of equal length ordered by length
+         *                 go in order of their fingerprints instead of positions (see {@link KeyOrder#distinct()}).
+         *                 Repeated lines longer than length field allows are dropped as well.
+         */
+        public Builder distinct (boolean distinct){
+            this.distinct = distinct;
+            return this;
+        }
+
+        public Builder listener (SortListener listener){
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * @return - sorter.
+         * @throws IllegalStateException if source or destination is not given.
+         * @throws IllegalArgumentException if charset is not supported, number of threads is not positive
+         * or order with secondary key or distinct lines are combined with streaming mode or selection of shortest
+         * or longest lines, or distinct lines are ordered by field.
+         */
+        public ExternalLineSorter build (){
+            if(source == null && sourceChannel == null){
+                throw new IllegalStateException("Source is not given");
+            }
+            if(destination == null && destinationChannel == null){
+                throw new IllegalStateException("Destination is not given");
+            }
+            if(!ByteScanner.isSupported(charset)){
+                throw new IllegalArgumentException(String.format("Charset %s is not supported", charset));
+            }
+            if(threads < 1){
+                throw new IllegalArgumentException(String.format("Wrong number of threads %d", threads));
+            }
+            if(order == null){
+                order = KeyOrder.LENGTH;
+            }
+            KeyOrder effective = distinct ? order.distinct() : order;
+            if(!effective.isLengthOnly() && (source == null || destination == null || selection != null && selection.isTop())){
+                throw new IllegalArgumentException("Order with secondary key or distinct lines need source and destination"
+                        + " files and all lines");
+            }
+            if(listener == null){
+                listener = SortListener.NONE;
+            }
+            return new ExternalLineSorter(this, effective);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.sapashev;
+
+import jdk.jfr.*;
+
+/**
+ * Emits metrics of sorting as JFR events of category "FileSortByLines", so they are recorded together with
+ * GC, I/O and thread events of the same run: java -XX:StartFlightRecording ... SortLines ... jfr
+ * Events which are not enabled by recording settings cost one check.
+ * Module jdk.jfr is the reason why the project needs Java 11.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class JfrListener implements SortListener {
+
+    @Override
+    public void phaseStarted (Phase phase){
+        PhaseStartEvent e = new PhaseStartEvent();
+        if(e.shouldCommit()){
+            e.phase = phase.name();
+            e.commit();
+        }
+    }
+
+    @Override
+    public void phaseFinished (Phase phase, long wallNanos, long cpuNanos){
+        PhaseEvent e = new PhaseEvent();
+        if(e.shouldCommit()){
+            e.phase = phase.name();
+            e.wall = wallNanos;
+            e.cpu = cpuNanos;
+            e.commit();
+        }
+    }
+
+    @Override
+    public void scanned (long bytes, long lines){
+        ScanEvent e = new ScanEvent();
+        if(e.shouldCommit()){
+            e.bytes = bytes;
+            e.lines = lines;
+            e.commit();
+        }
+    }
+
+    @Override
+    public void sorted (long lines, long nanos){
+        SortEvent e = new SortEvent();
+        if(e.shouldCommit()){
+            e.lines = lines;
+            e.time = nanos;
+            e.commit();
+        }
+    }
+
+    @Override
+    public void runProduced (long lines, long bytes){
+        RunEvent e = new RunEvent();
+        if(e.shouldCommit()){
+            e.lines = lines;
+            e.bytes = bytes;
+            e.commit();
+        }
+    }
+
+    @Override
+    public void joined (int runs, long bytes){
+        JoinEvent e = new JoinEvent();
+        if(e.shouldCommit()){
+            e.runs = runs;
+            e.bytes = bytes;
+            e.commit();
+        }
+    }
+
+    @Override
+    public void merged (int pass, int runs, long bytes, long nanos){
+        MergeEvent e = new MergeEvent();
+        if(e.shouldCommit()){
+            e.pass = pass;
+            e.runs = runs;
+            e.bytes = bytes;
+            e.time = nanos;
+            e.commit();
+        }
+    }
+
+    @Override
+    public void copied (long bytes, long lines, long nanos){
+        CopyEvent e = new CopyEvent();
+        if(e.shouldCommit()){
+            e.bytes = bytes;
+            e.lines = lines;
+            e.time = nanos;
+            e.commit();
+        }
+    }
+
+    @Override
+    public void gatherRefused (long bytes, long lines){
+        GatherRefusedEvent e = new GatherRefusedEvent();
+        if(e.shouldCommit()){
+            e.bytes = bytes;
+            e.lines = lines;
+            e.commit();
+        }
+    }
+
+    @Name("com.sapashev.PhaseStart")
+    @Label("Phase Start")
+    @Category("FileSortByLines")
+    static class PhaseStartEvent extends Event {
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("com.sapashev.Phase")
+    @Label("Phase")
+    @Category("FileSortByLines")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Wall Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long wall;
+        @Label("CPU Time")
+        @Description("CPU time of all threads of process, -1 if unknown")
+        @Timespan(Timespan.NANOSECONDS)
+        long cpu;
+    }
+
+    @Name("com.sapashev.Scan")
+    @Label("Scan")
+    @Category("FileSortByLines")
+    static class ScanEvent extends Event {
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Lines")
+        long lines;
+    }
+
+    @Name("com.sapashev.Sort")
+    @Label("Sort")
+    @Category("FileSortByLines")
+    static class SortEvent extends Event {
+        @Label("Lines")
+        long lines;
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    @Name("com.sapashev.Run")
+    @Label("Run")
+    @Category("FileSortByLines")
+    static class RunEvent extends Event {
+        @Label("Lines")
+        long lines;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.sapashev.Join")
+    @Label("Natural Run Join")
+    @Category("FileSortByLines")
+    static class JoinEvent extends Event {
+        @Label("Runs")
+        int runs;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.sapashev.Merge")
+    @Label("Merge")
+    @Category("FileSortByLines")
+    static class MergeEvent extends Event {
+        @Label("Pass")
+        int pass;
+        @Label("Runs")
+        int runs;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    @Name("com.sapashev.Copy")
+    @Label("Copy")
+    @Category("FileSortByLines")
+    static class CopyEvent extends Event {
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Lines")
+        long lines;
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    @Name("com.sapashev.GatherRefused")
+    @Label("Gather Refused")
+    @Description("Window copied in order of reference instead of source positions")
+    @Category("FileSortByLines")
+    static class GatherRefusedEvent extends Event {
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Lines")
+        long lines;
+    }
+}
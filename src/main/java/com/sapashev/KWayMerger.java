@@ -0,0 +1,185 @@
+package com.sapashev;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges any number of sorted runs to the one sorted file in a single pass.
+ * Current values of all runs compete in the loser tree keyed on line length,
+ * so every value is read and written only once per pass instead of once per pairwise merge.
+ * Lines of equal length are taken from runs in order of the list, so merging is stable.
+ * If number of runs exceeds fanIn (limit of simultaneously opened files), consecutive groups of fanIn runs
+ * are merged to the intermediate runs first.
+ * Merged runs are deleted, merged file is placed to the disk other than disks of runs if possible.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class KWayMerger {
+    public static final int DEFAULT_FAN_IN = 128;
+    public static final int DEFAULT_MEMORY = 128 * 1024 * 1024;
+    private static final int MIN_BUFFER = 64 * 1024;
+    static final long EXHAUSTED = Long.MAX_VALUE;
+    private final Packer p;
+    private final int fanIn;
+    private final int memory;
+    private final SpillManager spills;
+    private SortListener listener = SortListener.NONE;
+
+    public KWayMerger(Packer p){
+        this(p, DEFAULT_FAN_IN, DEFAULT_MEMORY, SpillManager.defaultManager());
+    }
+
+    /**
+     * @param p - packer object which unpacks line length from packed long value.
+     * @param fanIn - maximal number of runs merged at once.
+     * @param memory - size in bytes of all read and write buffers of one merge.
+     * @param spills - manager which places merged files to the spill directories.
+     */
+    public KWayMerger(Packer p, int fanIn, int memory, SpillManager spills){
+        this.p = p;
+        this.fanIn = Math.max(fanIn, 2);
+        this.memory = memory;
+        this.spills = spills;
+    }
+
+    /**
+     * @param listener - listener which is told about each merge.
+     */
+    public void setListener (SortListener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * Merges runs to the one file, making intermediate passes if there are more than fanIn runs.
+     * @param runs - sorted runs in order of source.
+     * @return - file which contains all values of runs in sorted manner.
+     * @throws IOException
+     */
+    public File merge (List<File> runs) throws IOException {
+        List<File> current = new ArrayList<>(runs);
+        int pass = 1;
+        while (current.size() > fanIn){
+            List<File> next = new ArrayList<>();
+            for(int i = 0; i < current.size(); i += fanIn){
+                next.add(mergeOnce(current.subList(i, Math.min(i + fanIn, current.size())), pass));
+            }
+            current = next;
+            pass++;
+        }
+        return mergeOnce(current, pass);
+    }
+
+    /**
+     * Merges up to fanIn runs to the one file through the loser tree.
+     * @param runs - sorted runs in order of source.
+     * @return - merged file.
+     * @throws IOException
+     */
+    public File mergeOnce (List<File> runs) throws IOException {
+        return mergeOnce(runs, 1);
+    }
+
+    /**
+     * Merges up to fanIn runs to the one file through the loser tree.
+     * @param runs - sorted runs in order of source.
+     * @param pass - merge pass reported to the listener.
+     * @return - merged file.
+     * @throws IOException
+     */
+    File mergeOnce (List<File> runs, int pass) throws IOException {
+        long start = System.nanoTime();
+        long size = 0;
+        for(File run : runs){
+            size += run.length();
+        }
+        File f = spills.create("arsMERGE_", size, runs);
+        int k = runs.size();
+        if(k == 0){
+            new RunWriter(f, p, Long.BYTES).close();
+            return f;
+        }
+        int bufferSize = Math.max(memory / (k + 1), MIN_BUFFER);
+        RunReader[] readers = new RunReader[k];
+        try(RunWriter writer = new RunWriter(f, p, bufferSize)){
+            for(int i = 0; i < k; i++){
+                readers[i] = new RunReader(runs.get(i), p, bufferSize);
+            }
+            long[] keys = new long[k];
+            long[] values = new long[k];
+            for(int i = 0; i < k; i++){
+                advance(readers[i], i, keys, values);
+            }
+            int[] tree = new int[k];
+            tree[0] = build(tree, keys, 1, k);
+            int winner = tree[0];
+            while (keys[winner] != EXHAUSTED){
+                writer.write(values[winner]);
+                advance(readers[winner], winner, keys, values);
+                winner = replay(tree, keys, winner, k);
+            }
+        } finally {
+            for(RunReader r : readers){
+                if(r != null){
+                    r.close();
+                }
+            }
+        }
+        runs.forEach(spills::delete);
+        listener.merged(pass, k, f.length(), System.nanoTime() - start);
+        return f;
+    }
+
+    /**
+     * Reads next value of the run to the leaf of tree.
+     * Key is length of line in the more significant half and run index in the less one,
+     * so equal lengths are ordered by runs.
+     */
+    private void advance (RunReader reader, int leaf, long[] keys, long[] values) throws IOException {
+        if(reader.hasNext()){
+            long value = reader.next();
+            values[leaf] = value;
+            keys[leaf] = ((long)p.getLength(value) << 32) | leaf;
+        } else {
+            keys[leaf] = EXHAUSTED;
+        }
+    }
+
+    /**
+     * Fills internal nodes of subtree with losers of their matches.
+     * Nodes 1..k-1 are internal ones, node k + i is leaf of run i.
+     * @return - winner of subtree.
+     */
+    static int build (int[] tree, long[] keys, int node, int k){
+        if(node >= k){
+            return node - k;
+        }
+        int left = build(tree, keys, node * 2, k);
+        int right = build(tree, keys, node * 2 + 1, k);
+        if(keys[left] <= keys[right]){
+            tree[node] = right;
+            return left;
+        }
+        tree[node] = left;
+        return right;
+    }
+
+    /**
+     * Replays matches from the leaf of previous winner to the root.
+     * @return - new winner.
+     */
+    static int replay (int[] tree, long[] keys, int leaf, int k){
+        int winner = leaf;
+        for(int node = (leaf + k) >>> 1; node > 0; node >>>= 1){
+            if(keys[tree[node]] < keys[winner]){
+                int loser = winner;
+                winner = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = winner;
+        return winner;
+    }
+}
@@ -0,0 +1,262 @@
+package com.sapashev;
+
+/**
+ * Order of lines: by length and/or by secondary key (see {@link LineKey}), ties are ordered by positions in source.
+ * Could be given as:
+ * 1) "length" - by length only (default, sorted by radix sort of packed values);
+ * 2) "lex" - by bytes of the whole line;
+ * 3) "length,lex" - by length, then by bytes of the whole line;
+ * 4) "field:D:N" or "length,field:D:N" - by N-th field delimited by character D ("\t" for tab).
+ * Secondary key is normalized to the prefix held next to the packed value (see {@link KeyedSorter}):
+ * its first PREFIX bytes padded by zeros and its length limited by PREFIX + 1 in the last byte, as unsigned long.
+ * Prefixes are ordered as keys, and equal prefixes with length byte up to PREFIX mean equal keys.
+ * So most of comparisons are made on primitives, and bytes of keys are read from the source only when
+ * both keys are longer than PREFIX and their first PREFIX bytes are equal.
+ * Distinct order (see distinct()) keeps only the first of equal lines. Equal lines should go one after another,
+ * so it is made only of orders by length or by the whole line. Lines ordered by length only are hashed instead:
+ * prefix holds upper 32 bits of fingerprint of line bytes, lines of equal length are ordered by fingerprints,
+ * then by positions. So in distinct order by length lines of equal length do not keep order of their positions,
+ * unlike all other orders, their order is given by fingerprints and looks random. Line is dropped only if its bytes are equal to one of the kept lines with the same fingerprint,
+ * so collisions of fingerprints drop nothing and cost only comparison of bytes, while sorted fingerprints of
+ * 32 bits take half the bytes of 64-bit ones in the prefix column of runs (see {@link RunWriter}).
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class KeyOrder {
+    public static final KeyOrder LENGTH = new KeyOrder(true, null);
+    public static final int PREFIX = Long.BYTES - 1;
+    private static final long C1 = 0x87C37B91114253D5L;             //multipliers of MurmurHash3.
+    private static final long C2 = 0x4CF5AD432745937FL;
+    private final boolean byLength;
+    private final LineKey key;
+    private final boolean distinct;
+
+    /**
+     * @param byLength - true to order by length first.
+     * @param key - secondary key, or null to order by length only.
+     */
+    public KeyOrder(boolean byLength, LineKey key){
+        this(byLength, key, false);
+    }
+
+    private KeyOrder(boolean byLength, LineKey key, boolean distinct){
+        if(!byLength && key == null){
+            throw new IllegalArgumentException("Order has no keys");
+        }
+        this.byLength = byLength;
+        this.key = key;
+        this.distinct = distinct;
+    }
+
+    /**
+     * Parses order from the command-line argument.
+     * @param value - argument value.
+     * @return - order.
+     */
+    public static KeyOrder parse (String value){
+        String v = value.trim();
+        boolean byLength = false;
+        if(v.toLowerCase().startsWith("length")){
+            byLength = true;
+            v = v.substring("length".length());
+            if(v.isEmpty()){
+                return LENGTH;
+            }
+            if(v.charAt(0) != ','){
+                throw new IllegalArgumentException(String.format("Wrong order %s", value));
+            }
+            v = v.substring(1).trim();
+        }
+        if("lex".equalsIgnoreCase(v)){
+            return new KeyOrder(byLength, LineKey.WHOLE);
+        }
+        if(v.toLowerCase().startsWith("field:")){
+            String field = v.substring("field:".length());
+            int colon = field.lastIndexOf(':');
+            String delimiter = colon < 0 ? "" : field.substring(0, colon);
+            if("\\t".equals(delimiter)){
+                delimiter = "\t";
+            }
+            if(delimiter.length() != 1 || delimiter.charAt(0) > 127){
+                throw new IllegalArgumentException(String.format("Wrong delimiter of order %s", value));
+            }
+            int index = Integer.parseInt(field.substring(colon + 1).trim());
+            return new KeyOrder(byLength, LineKey.field((byte)delimiter.charAt(0), index));
+        }
+        throw new IllegalArgumentException(String.format("Wrong order %s", value));
+    }
+
+    /**
+     * @return - the same order which keeps only the first of equal lines. If lines are ordered by length only,
+     * kept lines of equal length go in order of their fingerprints, not positions.
+     * @throws IllegalArgumentException if lines are ordered by the field, equal lines may be apart in such order.
+     */
+    public KeyOrder distinct (){
+        if(key != null && key != LineKey.WHOLE){
+            throw new IllegalArgumentException("Distinct lines need order by length or by the whole line");
+        }
+        return new KeyOrder(byLength, key, true);
+    }
+
+    /**
+     * @return - true if lines are ordered by length only and all of them are kept, so packed values are enough.
+     */
+    public boolean isLengthOnly (){
+        return key == null && !distinct;
+    }
+
+    /**
+     * @return - true if lines are ordered by length first, then they may be sorted by radix sort of packed values
+     * before ordering of lines of equal length.
+     */
+    public boolean isByLength (){
+        return byLength;
+    }
+
+    /**
+     * @return - true if only the first of equal lines is kept.
+     */
+    public boolean isDistinct (){
+        return distinct;
+    }
+
+    /**
+     * @param src - source file.
+     * @param p - packer object which unpacks pairs (position:line length) from packed long value.
+     * @param meta - packed value of line.
+     * @return - normalized prefix of key of line, or upper 32 bits of fingerprint of line in distinct order by length.
+     */
+    public long prefix (MappedSource src, Packer p, long meta){
+        if(key == null){
+            return distinct ? fingerprint(src, p.getPosition(meta), p.getLength(meta)) >>> 32 : 0;
+        }
+        long position = p.getPosition(meta);
+        long located = key.locate(src, position, p.getLength(meta));
+        long start = position + (located >>> 32);
+        int length = Math.min(PREFIX, (int)located);
+        long prefix = Math.min((int)located, PREFIX + 1);
+        for(int i = 0; i < length; i++){
+            prefix |= (src.get(start + i) & 0xFFL) << (56 - i * 8);
+        }
+        return prefix;
+    }
+
+    /**
+     * Compares lines by their packed values and prefixes, bytes of keys are compared only if prefixes are equal.
+     * @param src - source file.
+     * @param p - packer object which unpacks pairs (position:line length) from packed long value.
+     * @return - negative if line "a" goes first, positive if line "b" goes first, zero for the same line.
+     */
+    public int compare (MappedSource src, Packer p, long a, long prefixA, long b, long prefixB){
+        if(byLength){
+            int la = p.getLength(a);
+            int lb = p.getLength(b);
+            if(la != lb){
+                return la < lb ? -1 : 1;
+            }
+        }
+        if(key != null){
+            if(prefixA != prefixB){
+                return Long.compareUnsigned(prefixA, prefixB);
+            }
+            if((prefixA & 0xFF) > PREFIX){
+                int c = compareKeys(src, p, a, b);
+                if(c != 0){
+                    return c;
+                }
+            }
+        } else if(distinct && prefixA != prefixB){
+            return Long.compareUnsigned(prefixA, prefixB);
+        }
+        return Long.compare(p.getPosition(a), p.getPosition(b));
+    }
+
+    /**
+     * @return - true if prefixes are fingerprints, then equal lines go among lines with the same fingerprint,
+     * otherwise equal lines go one after another.
+     */
+    boolean isHashed (){
+        return distinct && key == null;
+    }
+
+    /**
+     * Tells if line "b" repeats line "a", which goes before it in distinct order.
+     * Bytes of lines are compared only if their lengths and prefixes are equal and prefix does not hold the whole line.
+     * @param src - source file.
+     * @param p - packer object which unpacks pairs (position:line length) from packed long value.
+     * @return - true if lines are equal.
+     */
+    public boolean isDuplicate (MappedSource src, Packer p, long a, long prefixA, long b, long prefixB){
+        int length = p.getLength(a);
+        if(length != p.getLength(b) || prefixA != prefixB){
+            return false;
+        }
+        int from = key == null ? 0 : PREFIX;
+        return length <= from || compareBytes(src, p.getPosition(a), length, p.getPosition(b), length, from) == 0;
+    }
+
+    /**
+     * Compares bytes of keys longer than PREFIX after their equal prefixes.
+     */
+    private int compareKeys (MappedSource src, Packer p, long a, long b){
+        long pa = p.getPosition(a);
+        long pb = p.getPosition(b);
+        long ka = key.locate(src, pa, p.getLength(a));
+        long kb = key.locate(src, pb, p.getLength(b));
+        return compareBytes(src, pa + (ka >>> 32), (int)ka, pb + (kb >>> 32), (int)kb, PREFIX);
+    }
+
+    /**
+     * Compares bytes of source as unsigned ones, eight of them at once while possible.
+     * @param from - offset of the first byte to compare, preceding bytes are known to be equal.
+     * @return - result of comparison, shorter bytes go first if they are the beginning of longer ones.
+     */
+    private static int compareBytes (MappedSource src, long pa, int la, long pb, int lb, int from){
+        int common = Math.min(la, lb);
+        int i = from;
+        for(; i + Long.BYTES <= common; i += Long.BYTES){
+            long wa = src.getLong(pa + i);
+            long wb = src.getLong(pb + i);
+            if(wa != wb){
+                return Long.compareUnsigned(wa, wb);
+            }
+        }
+        for(; i < common; i++){
+            int ba = src.get(pa + i) & 0xFF;
+            int bb = src.get(pb + i) & 0xFF;
+            if(ba != bb){
+                return ba < bb ? -1 : 1;
+            }
+        }
+        return Integer.compare(la, lb);
+    }
+
+    /**
+     * 64-bit fingerprint of line bytes: eight bytes at once are mixed as blocks of MurmurHash3,
+     * the rest bytes and length of line are mixed by its finalizer.
+     * @param src - source file.
+     * @param position - position of line start.
+     * @param length - length of line in bytes.
+     * @return - fingerprint.
+     */
+    static long fingerprint (MappedSource src, long position, int length){
+        long h = length;
+        int i = 0;
+        for(; i + Long.BYTES <= length; i += Long.BYTES){
+            h ^= Long.rotateLeft(src.getLong(position + i) * C1, 31) * C2;
+            h = Long.rotateLeft(h, 27) * 5 + 0x52DCE729;
+        }
+        long tail = 0;
+        for(; i < length; i++){
+            tail = tail << 8 | src.get(position + i) & 0xFF;
+        }
+        h ^= Long.rotateLeft(tail * C2, 33) * C1;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
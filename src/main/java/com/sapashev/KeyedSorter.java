@@ -0,0 +1,566 @@
+package com.sapashev;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sorts packed values of lines in the order with secondary key (see {@link KeyOrder}).
+ * Each line is held as record of two longs - packed value (position:line length) and normalized prefix of its key,
+ * so sort and merge compare primitives and read bytes of keys from the mapped source only when prefixes are equal.
+ * 1) ranges of source file are scanned concurrently, each of them by batches of equal share of memory budget;
+ *    records of batch are sorted by merge sort, in order by length packed values of batch are sorted
+ *    by radix sort first (see {@link Sorter}) and merge sort orders only records of equal length;
+ *    range which fits one batch keeps its records in memory, otherwise each batch is saved
+ *    to the run file of compact format with the prefix column (see {@link RunWriter});
+ * 2) runs are merged through the binary heap by fanIn at once, the last merge writes packed values only,
+ *    to the memory if all runs are in memory or to the run file without prefixes.
+ * In distinct order (see {@link KeyOrder#distinct()}) equal lines go together, so repeated lines are dropped
+ * from each sorted batch before it is saved and once more by each merge, the first of them is kept (see {@link Distinct}).
+ * Repeated lines which could not be packed are dropped after scanning (see {@link WideRecords#distinct(MappedSource)}).
+ * Scanning is reported to the listener as SCAN phase, merging as MERGE phase.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class KeyedSorter {
+    private static final int RECORD = 2;                   //longs of one record.
+    private static final int ENTRY_COST = Long.BYTES * 6;  //packed value, its radix scratch, record and scratch record of each line.
+    private static final int MAX_BATCH = Integer.MAX_VALUE / 4;
+    private static final int INSERTION = 32;               //records sorted by insertion before merging.
+    private static final int MIN_BUFFER = 64 * 1024;
+    private static final int MAX_BUFFER = 8 * 1024 * 1024;
+    private final Path source;
+    private final Packer packer;
+    private final KeyOrder order;
+    private final MemoryBudget budget;
+    private final int concurrencyLevel;
+    private final SpillManager spills;
+    private final Selection filter;
+    private final int fanIn;
+    private SortListener listener = SortListener.NONE;
+    private WideRecords wide = new WideRecords();
+
+    /**
+     * @param source - source file.
+     * @param packer - packer object which packs pairs (position:line length) to the long value.
+     * @param order - order of lines.
+     * @param budget - memory which may be spent on records of all threads.
+     * @param concurrencyLevel - maximal number of ranges scanned concurrently.
+     * @param spills - manager which places runs to the spill directories.
+     * @param filter - length range of lines to be sorted, null for all lines.
+     */
+    public KeyedSorter(Path source, Packer packer, KeyOrder order, MemoryBudget budget, int concurrencyLevel,
+                       SpillManager spills, Selection filter){
+        this.source = source;
+        this.packer = packer;
+        this.order = order;
+        this.budget = budget;
+        this.concurrencyLevel = Math.max(concurrencyLevel, 1);
+        this.spills = spills;
+        this.filter = filter;
+        this.fanIn = KWayMerger.DEFAULT_FAN_IN;
+    }
+
+    /**
+     * @param listener - listener of phases, scanned bytes, sorts, runs and merges.
+     */
+    public void setListener (SortListener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * Sorts lines of source file.
+     * @return - sorted reference to lines, its run file (if any) is deleted when reference is closed.
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public Reference sort () throws IOException, InterruptedException, ExecutionException {
+        wide = new WideRecords();
+        MappedSource src = new MappedSource(source);
+        long[] bounds = RunGenerator.ranges(source, concurrencyLevel);
+        int parts = bounds.length - 1;
+        int batch = Math.min(budget.entries(ENTRY_COST, parts), MAX_BATCH);
+        List<Run> runs = new ArrayList<>();
+        PhaseTimer timer = PhaseTimer.start(listener, SortListener.Phase.SCAN);
+        try {
+            ExecutorService service = Executors.newFixedThreadPool(parts);
+            try {
+                List<Future<List<Run>>> futures = new ArrayList<>(parts);
+                for(int i = 0; i < parts; i++){
+                    final long from = bounds[i];
+                    final long to = bounds[i + 1];
+                    futures.add(service.submit(() -> scan(from, to, batch, src.duplicate())));
+                }
+                for(Future<List<Run>> f : futures){
+                    runs.addAll(f.get());
+                }
+                if(order.isDistinct()){
+                    wide = wide.distinct(src);
+                }
+            } finally {
+                service.shutdownNow();
+            }
+        } finally {
+            timer.stop();
+        }
+        timer = PhaseTimer.start(listener, SortListener.Phase.MERGE);
+        try {
+            return merge(runs, src);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * @return - lines of the last sort which could not be packed, they go after all sorted lines.
+     */
+    public WideRecords wideRecords (){
+        return wide;
+    }
+
+    /**
+     * Scans the range by batches, sorts records of each batch and saves them to the run file,
+     * unless the whole range fits one batch.
+     * @return - runs of range in order of source.
+     * @throws IOException
+     */
+    private List<Run> scan (long from, long to, int batch, MappedSource src) throws IOException {
+        List<Run> runs = new ArrayList<>();
+        long[] metas = new long[batch];
+        long[] records = new long[batch * RECORD];
+        long[] scratch = new long[batch * RECORD];
+        try(ByteScanner scanner = new ByteScanner(source, from, to, ByteScanner.DEFAULT_WINDOW, wide);
+            Sorter sorter = new Sorter()){
+            while (!scanner.isEOF()){
+                long position = scanner.position();
+                int count = 0;
+                while (count < batch && !scanner.isEOF()){
+                    count += scanner.scan(metas, count, batch - count, packer);
+                }
+                listener.scanned(scanner.position() - position, count);
+                if(filter != null){
+                    count = (int)filter.filter(LongArray.wrap(metas), 0, count, packer);
+                }
+                if(count == 0){
+                    continue;
+                }
+                long start = System.nanoTime();
+                for(int i = 0; i < count; i++){
+                    records[i * RECORD] = metas[i];
+                    records[i * RECORD + 1] = order.prefix(src, packer, metas[i]);
+                }
+                if(order.isByLength()){
+                    byLength(records, scratch, metas, count, sorter);
+                    int lo = 0;
+                    for(int i = 1; i <= count; i++){
+                        if(i == count || packer.getLength(metas[i]) != packer.getLength(metas[lo])){
+                            sort(records, scratch, lo, i, src);
+                            lo = i;
+                        }
+                    }
+                } else {
+                    sort(records, scratch, 0, count, src);
+                }
+                listener.sorted(count, System.nanoTime() - start);
+                if(order.isDistinct()){
+                    count = distinct(records, count, src);
+                }
+                if(runs.isEmpty() && scanner.isEOF()){
+                    runs.add(new Run(records, count));
+                } else {
+                    runs.add(save(records, count));
+                }
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Puts records in order by length by radix sort. Prefixes are computed in order of positions, which reads
+     * the source sequentially, so records are not sorted themselves: pairs (batch index:line length) are sorted
+     * in the metas array and records are gathered in their order. Each line takes at least one byte,
+     * so batch index of line never exceeds its position and fits the packed value.
+     * Metas array holds packed values of lines sorted by length afterwards.
+     */
+    private void byLength (long[] records, long[] scratch, long[] metas, int size, Sorter sorter){
+        for(int i = 0; i < size; i++){
+            metas[i] = packer.packToLong(packer.getLength(records[i * RECORD]), i);
+        }
+        sorter.radixSort(LongArray.wrap(metas), size, packer);
+        System.arraycopy(records, 0, scratch, 0, size * RECORD);
+        for(int i = 0; i < size; i++){
+            int index = (int)packer.getPosition(metas[i]);
+            records[i * RECORD] = scratch[index * RECORD];
+            records[i * RECORD + 1] = scratch[index * RECORD + 1];
+            metas[i] = records[i * RECORD];
+        }
+    }
+
+    /**
+     * Bottom-up merge sort of records [lo, hi): blocks of INSERTION records are sorted by insertion,
+     * then sorted blocks are merged by pairs between two arrays. Sorted records are left in the records array.
+     */
+    private void sort (long[] records, long[] scratch, int lo, int hi, MappedSource src){
+        for(int i = lo; i < hi; i += INSERTION){
+            insertion(records, i, Math.min(i + INSERTION, hi), src);
+        }
+        long[] from = records;
+        long[] to = scratch;
+        for(long width = INSERTION; width < hi - lo; width *= 2){
+            for(long i = lo; i < hi; i += width * 2){
+                int mid = (int)Math.min(i + width, hi);
+                int end = (int)Math.min(i + width * 2, hi);
+                merge(from, (int)i, mid, end, to, src);
+            }
+            long[] t = from;
+            from = to;
+            to = t;
+        }
+        if(from != records){
+            System.arraycopy(from, lo * RECORD, records, lo * RECORD, (hi - lo) * RECORD);
+        }
+    }
+
+    private void insertion (long[] r, int lo, int hi, MappedSource src){
+        for(int i = lo + 1; i < hi; i++){
+            long meta = r[i * RECORD];
+            long prefix = r[i * RECORD + 1];
+            int j = i - 1;
+            for(; j >= lo && order.compare(src, packer, r[j * RECORD], r[j * RECORD + 1], meta, prefix) > 0; j--){
+                r[(j + 1) * RECORD] = r[j * RECORD];
+                r[(j + 1) * RECORD + 1] = r[j * RECORD + 1];
+            }
+            r[(j + 1) * RECORD] = meta;
+            r[(j + 1) * RECORD + 1] = prefix;
+        }
+    }
+
+    /**
+     * Merges sorted blocks [lo, mid) and [mid, hi) of array "from" to the same indexes of array "to".
+     */
+    private void merge (long[] from, int lo, int mid, int hi, long[] to, MappedSource src){
+        int i = lo;
+        int j = mid;
+        for(int k = lo; k < hi; k++){
+            int next;
+            if(j >= hi || i < mid && order.compare(src, packer, from[i * RECORD], from[i * RECORD + 1],
+                    from[j * RECORD], from[j * RECORD + 1]) <= 0){
+                next = i++;
+            } else {
+                next = j++;
+            }
+            to[k * RECORD] = from[next * RECORD];
+            to[k * RECORD + 1] = from[next * RECORD + 1];
+        }
+    }
+
+    /**
+     * Moves records which do not repeat previous ones to the beginning of array.
+     * @return - number of records left.
+     */
+    private int distinct (long[] r, int size, MappedSource src){
+        Distinct filter = new Distinct();
+        int kept = 0;
+        for(int i = 0; i < size; i++){
+            if(filter.isNew(src, r[i * RECORD], r[i * RECORD + 1])){
+                r[kept * RECORD] = r[i * RECORD];
+                r[kept * RECORD + 1] = r[i * RECORD + 1];
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Saves sorted records to the run file with prefixes.
+     * @return - run.
+     * @throws IOException
+     */
+    private Run save (long[] records, int size) throws IOException {
+        File f = spills.create("arsKEY_", (long)size * RECORD * Long.BYTES);
+        try(RunWriter writer = new RunWriter(f, packer, RunWriter.DEFAULT_BUFFER, true)){
+            for(int i = 0; i < size; i++){
+                writer.write(records[i * RECORD], records[i * RECORD + 1]);
+            }
+        }
+        listener.runProduced(size, f.length());
+        return new Run(f, size);
+    }
+
+    /**
+     * Merges runs to the reference. While there are more than fanIn runs, groups of them are merged
+     * to the intermediate runs with prefixes.
+     * @throws IOException
+     */
+    private Reference merge (List<Run> runs, MappedSource src) throws IOException {
+        int pass = 1;
+        while (runs.size() > fanIn){
+            List<Run> next = new ArrayList<>();
+            for(int i = 0; i < runs.size(); i += fanIn){
+                List<Run> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                long size = 0;
+                List<File> files = new ArrayList<>();
+                for(Run r : group){
+                    if(r.file != null){
+                        files.add(r.file);
+                        size += r.file.length();
+                    } else {
+                        size += r.count * RECORD * Long.BYTES;
+                    }
+                }
+                long start = System.nanoTime();
+                File f = spills.create("arsKEY_", size, files);
+                long count;
+                try(RunWriter writer = new RunWriter(f, packer, RunWriter.DEFAULT_BUFFER, true)){
+                    count = merge(group, src, writer::write);
+                }
+                listener.merged(pass, group.size(), f.length(), System.nanoTime() - start);
+                next.add(new Run(f, count));
+            }
+            runs = next;
+            pass++;
+        }
+        long total = 0;
+        boolean inMemory = true;
+        for(Run r : runs){
+            total += r.count;
+            inMemory &= r.file == null;
+        }
+        int[] maxLength = new int[1];
+        long start = System.nanoTime();
+        if(inMemory){
+            LongArray metas = new LongArray(total);
+            long[] size = new long[1];
+            merge(runs, src, (meta, prefix) -> {
+                metas.set(size[0]++, meta);
+                maxLength[0] = Math.max(maxLength[0], packer.getLength(meta));
+            });
+            listener.merged(pass, runs.size(), size[0] * Long.BYTES, System.nanoTime() - start);
+            return new ArrayReference(metas, size[0], maxLength[0]);
+        }
+        File f = spills.create("arsKEY_", total * Long.BYTES);
+        try(RunWriter writer = new RunWriter(f, packer, RunWriter.DEFAULT_BUFFER)){
+            merge(runs, src, (meta, prefix) -> writer.write(meta));
+        }
+        listener.merged(pass, runs.size(), f.length(), System.nanoTime() - start);
+        return new RunReader(f, packer, RunReader.DEFAULT_BUFFER){
+            @Override
+            public void close () throws IOException {
+                super.close();
+                spills.delete(f);
+            }
+        };
+    }
+
+    /**
+     * Merges runs through the binary heap of cursors, the cursor of the first record in order lies in the root.
+     * Run files are deleted after merging. In distinct order records which repeat merged ones are skipped.
+     * Merge is reported to the listener by caller, which knows the size of output once it is closed.
+     * @param out - target of merged records.
+     * @return - number of merged records.
+     * @throws IOException
+     */
+    private long merge (List<Run> runs, MappedSource src, Output out) throws IOException {
+        int k = runs.size();
+        int bufferSize = (int)Math.max(MIN_BUFFER, Math.min(budget.bytes() / (k + 1), MAX_BUFFER));
+        Cursor[] cursors = new Cursor[k];
+        int[] heap = new int[k];
+        int size = 0;
+        long merged = 0;
+        try {
+            for(int i = 0; i < k; i++){
+                Run r = runs.get(i);
+                cursors[i] = r.file == null ? new Cursor(r.records, r.count) : new Cursor(r.file, packer, bufferSize);
+                if(cursors[i].next()){
+                    heap[size] = i;
+                    up(heap, size++, cursors, src);
+                }
+            }
+            Distinct filter = order.isDistinct() ? new Distinct() : null;
+            while (size > 0){
+                Cursor c = cursors[heap[0]];
+                if(filter == null || filter.isNew(src, c.meta, c.prefix)){
+                    out.put(c.meta, c.prefix);
+                    merged++;
+                }
+                if(!c.next()){
+                    heap[0] = heap[--size];
+                }
+                down(heap, size, cursors, src);
+            }
+        } finally {
+            for(Cursor c : cursors){
+                if(c != null){
+                    c.close();
+                }
+            }
+        }
+        for(Run r : runs){
+            if(r.file != null){
+                spills.delete(r.file);
+            }
+        }
+        return merged;
+    }
+
+    private boolean less (Cursor a, Cursor b, MappedSource src){
+        return order.compare(src, packer, a.meta, a.prefix, b.meta, b.prefix) < 0;
+    }
+
+    private void up (int[] heap, int i, Cursor[] cursors, MappedSource src){
+        int value = heap[i];
+        while (i > 0){
+            int parent = (i - 1) >>> 1;
+            if(!less(cursors[value], cursors[heap[parent]], src)){
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    private void down (int[] heap, int size, Cursor[] cursors, MappedSource src){
+        if(size == 0){
+            return;
+        }
+        int i = 0;
+        int value = heap[0];
+        while (true){
+            int child = i * 2 + 1;
+            if(child >= size){
+                break;
+            }
+            if(child + 1 < size && less(cursors[heap[child + 1]], cursors[heap[child]], src)){
+                child++;
+            }
+            if(!less(cursors[heap[child]], cursors[value], src)){
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+
+    /**
+     * Drops repeated lines from the records going in distinct order. Keeps records of the current group
+     * of equal length and prefix which were not dropped: each record of group is compared with all of them
+     * if prefixes are fingerprints, otherwise equal lines go one after another and only the last one is kept.
+     * Group of fingerprint holds more than one line only if fingerprints of different lines collide.
+     */
+    private class Distinct {
+        private long[] kept = new long[RECORD * 4];
+        private int size;
+
+        /**
+         * @return - false if line repeats one of the previous lines.
+         */
+        boolean isNew (MappedSource src, long meta, long prefix){
+            if(size > 0 && (packer.getLength(kept[0]) != packer.getLength(meta) || kept[1] != prefix)){
+                size = 0;
+            }
+            for(int i = size - 1; i >= 0; i--){
+                if(order.isDuplicate(src, packer, kept[i * RECORD], kept[i * RECORD + 1], meta, prefix)){
+                    return false;
+                }
+            }
+            if(!order.isHashed()){
+                size = 0;
+            }
+            if((size + 1) * RECORD > kept.length){
+                kept = Arrays.copyOf(kept, kept.length * 2);
+            }
+            kept[size * RECORD] = meta;
+            kept[size * RECORD + 1] = prefix;
+            size++;
+            return true;
+        }
+    }
+
+    /**
+     * Target of merged records.
+     */
+    private interface Output {
+        void put (long meta, long prefix) throws IOException;
+    }
+
+    /**
+     * Sorted records held in memory or in the run file with prefixes.
+     */
+    private static class Run {
+        final long[] records;
+        final File file;
+        final long count;
+
+        Run(long[] records, int count){
+            this.records = records;
+            this.file = null;
+            this.count = count;
+        }
+
+        Run(File file, long count){
+            this.records = null;
+            this.file = file;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Current record of run being merged.
+     */
+    private static class Cursor {
+        private final long[] records;
+        private final RunReader in;
+        private final long count;
+        private long index;
+        long meta;
+        long prefix;
+
+        Cursor(long[] records, long count){
+            this.records = records;
+            this.in = null;
+            this.count = count;
+        }
+
+        Cursor(File file, Packer packer, int bufferSize) throws IOException {
+            this.records = null;
+            this.in = new RunReader(file, packer, bufferSize);
+            this.count = in.count();
+        }
+
+        /**
+         * @return - false if run is exhausted.
+         * @throws IOException
+         */
+        boolean next () throws IOException {
+            if(index == count){
+                return false;
+            }
+            if(records != null){
+                meta = records[(int)index * RECORD];
+                prefix = records[(int)index * RECORD + 1];
+            } else {
+                meta = in.next();
+                prefix = in.prefix();
+            }
+            index++;
+            return true;
+        }
+
+        void close () throws IOException {
+            if(in != null){
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.sapashev;
+
+/**
+ * Finds secondary sort key in the line of source file (see {@link KeyOrder}).
+ * Key is the consecutive bytes of line, which are compared as unsigned bytes, shorter key goes first
+ * if it is the beginning of longer one.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public interface LineKey {
+    /**
+     * Key is the whole line.
+     */
+    LineKey WHOLE = (src, position, length) -> length;
+
+    /**
+     * Finds key in the line, may be invoked by several threads concurrently.
+     * @param src - source file.
+     * @param position - position of line start.
+     * @param length - length of line in bytes.
+     * @return - offset of key from line start in the more significant half and key length in the less one.
+     */
+    long locate (MappedSource src, long position, int length);
+
+    /**
+     * @param delimiter - byte which separates fields of line.
+     * @param index - number of field starting from 1, line with less fields has empty key.
+     * @return - key which is the field of line.
+     */
+    static LineKey field (byte delimiter, int index){
+        if(index < 1){
+            throw new IllegalArgumentException(String.format("Wrong field number %d", index));
+        }
+        return (src, position, length) -> {
+            int start = 0;
+            for(int field = 1; field < index; field++){
+                while (start < length && src.get(position + start) != delimiter){
+                    start++;
+                }
+                if(start == length){
+                    return (long)length << 32;
+                }
+                start++;
+            }
+            int end = start;
+            while (end < length && src.get(position + end) != delimiter){
+                end++;
+            }
+            return ((long)start << 32) | (end - start);
+        };
+    }
+}
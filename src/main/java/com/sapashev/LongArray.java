@@ -0,0 +1,190 @@
+package com.sapashev;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Array of long values indexed by long, held off-heap in direct ByteBuffers.
+ * Array is divided to the segments of 2^SHIFT values, so it is not limited by 2^31 entries of java array,
+ * and packed values of lines do not load garbage collector however many of them are held.
+ * Memory of array is returned to the system by close(), without waiting for garbage collection.
+ * Single values are accessed by absolute get/set, which do not change state of array and may be used
+ * by several threads on distinct indexes. Bulk operations work with their own views of segments.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class LongArray implements AutoCloseable {
+    private static final int SHIFT = 27;                    //each segment holds 2^27 values (1 GB).
+    private static final Method CLEANER = cleaner();
+    private static final Object UNSAFE = unsafe();
+    private final int shift;
+    private final long mask;
+    private final long size;
+    private ByteBuffer[] buffers;
+    private LongBuffer[] segments;
+
+    /**
+     * Allocates off-heap array filled with zeros.
+     * @param size - number of values.
+     */
+    public LongArray(long size){
+        this.shift = SHIFT;
+        this.mask = (1L << SHIFT) - 1;
+        this.size = size;
+        int count = (int)((size + mask) >>> SHIFT);
+        this.buffers = new ByteBuffer[count];
+        this.segments = new LongBuffer[count];
+        for(int i = 0; i < count; i++){
+            int length = (int)Math.min(mask + 1, size - ((long)i << SHIFT));
+            buffers[i] = ByteBuffer.allocateDirect(length * Long.BYTES).order(ByteOrder.nativeOrder());
+            segments[i] = buffers[i].asLongBuffer();
+        }
+    }
+
+    private LongArray(long[] values){
+        this.shift = 31;
+        this.mask = Integer.MAX_VALUE;
+        this.size = values.length;
+        this.buffers = new ByteBuffer[0];
+        this.segments = new LongBuffer[]{LongBuffer.wrap(values)};
+    }
+
+    /**
+     * @param values - java array.
+     * @return - view of java array, changes of view are visible in the array and vice versa.
+     */
+    public static LongArray wrap (long[] values){
+        return new LongArray(values);
+    }
+
+    /**
+     * @return - number of values.
+     */
+    public long size (){
+        return size;
+    }
+
+    public long get (long index){
+        return segments[(int)(index >>> shift)].get((int)(index & mask));
+    }
+
+    public void set (long index, long value){
+        segments[(int)(index >>> shift)].put((int)(index & mask), value);
+    }
+
+    /**
+     * Copies values of this array to the java array.
+     * @param index - index of the first value to copy.
+     * @param dst - target array.
+     * @param offset - first index of target array.
+     * @param length - number of values.
+     */
+    public void get (long index, long[] dst, int offset, int length){
+        while (length > 0){
+            LongBuffer segment = segments[(int)(index >>> shift)].duplicate();
+            int relative = (int)(index & mask);
+            int chunk = Math.min(length, segment.limit() - relative);
+            segment.position(relative);
+            segment.get(dst, offset, chunk);
+            index += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Copies values of java array to this array.
+     * @param index - index of this array to copy the first value to.
+     * @param src - source array.
+     * @param offset - first index of source array.
+     * @param length - number of values.
+     */
+    public void put (long index, long[] src, int offset, int length){
+        while (length > 0){
+            LongBuffer segment = segments[(int)(index >>> shift)].duplicate();
+            int relative = (int)(index & mask);
+            int chunk = Math.min(length, segment.limit() - relative);
+            segment.position(relative);
+            segment.put(src, offset, chunk);
+            index += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Copies values between arrays segment by segment.
+     * @param src - source array.
+     * @param from - index of the first value of source.
+     * @param dst - target array.
+     * @param to - index of target to copy the first value to.
+     * @param length - number of values.
+     */
+    public static void copy (LongArray src, long from, LongArray dst, long to, long length){
+        while (length > 0){
+            LongBuffer in = src.segments[(int)(from >>> src.shift)].duplicate();
+            LongBuffer out = dst.segments[(int)(to >>> dst.shift)].duplicate();
+            in.position((int)(from & src.mask));
+            out.position((int)(to & dst.mask));
+            int chunk = (int)Math.min(length, Math.min(in.remaining(), out.remaining()));
+            in.limit(in.position() + chunk);
+            out.put(in);
+            from += chunk;
+            to += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Frees memory of array, array should not be used after that.
+     * Views of java arrays are left to garbage collector.
+     */
+    @Override
+    public void close (){
+        ByteBuffer[] freed = buffers;
+        buffers = new ByteBuffer[0];
+        segments = new LongBuffer[0];
+        for(ByteBuffer buf : freed){
+            free(buf);
+        }
+    }
+
+    /**
+     * Runs cleaner of direct buffer if JVM allows that, otherwise buffer is freed by garbage collector.
+     */
+    private static void free (ByteBuffer buf){
+        if(CLEANER != null){
+            try {
+                CLEANER.invoke(UNSAFE, buf);
+            } catch (ReflectiveOperationException | RuntimeException ignore){
+                //memory is freed when buffer is collected.
+            }
+        }
+    }
+
+    /**
+     * Unsafe is looked up by reflection, since javac warns about every direct use of internal API.
+     * @return - Unsafe.invokeCleaner(ByteBuffer) method, or null if module jdk.unsupported is absent.
+     */
+    private static Method cleaner (){
+        try {
+            return Class.forName("sun.misc.Unsafe").getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e){
+            return null;
+        }
+    }
+
+    private static Object unsafe (){
+        try {
+            Field f = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            return f.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e){
+            return null;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.sapashev;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of the whole source file mapped to the list of consecutive MappedByteBuffers.
+ * Lines could be read by absolute position even if they lie on boundary of two buffers.
+ * Buffers have their own position, so each thread should work with its own duplicate().
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class MappedSource {
+    private static final int SHIFT = 30;                   //each buffer maps 1 GB of file.
+    private static final long MASK = (1L << SHIFT) - 1;
+    private final ByteBuffer[] buffers;
+    private final long size;
+
+    /**
+     * Maps the whole file.
+     * @param source - source file.
+     * @throws IOException
+     */
+    public MappedSource(Path source) throws IOException {
+        try(FileChannel fc = FileChannel.open(source, StandardOpenOption.READ)){
+            this.size = fc.size();
+            int count = (int)((size + MASK) >>> SHIFT);
+            this.buffers = new ByteBuffer[count];
+            for(int i = 0; i < count; i++){
+                long position = (long)i << SHIFT;
+                MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MASK + 1, size - position));
+                buffers[i] = buf;
+            }
+        }
+    }
+
+    private MappedSource(ByteBuffer[] buffers, long size){
+        this.buffers = buffers;
+        this.size = size;
+    }
+
+    /**
+     * @return - view of the same mappings with independent positions, to be used by another thread.
+     */
+    public MappedSource duplicate (){
+        ByteBuffer[] copies = new ByteBuffer[buffers.length];
+        for(int i = 0; i < copies.length; i++){
+            copies[i] = buffers[i].duplicate();
+        }
+        return new MappedSource(copies, size);
+    }
+
+    /**
+     * @return - size of the source file in bytes.
+     */
+    public long size (){
+        return size;
+    }
+
+    /**
+     * Reads one byte by absolute position, does not change state of view, so it may be used by several threads.
+     * @param position - absolute position in source file.
+     * @return - byte of source file.
+     */
+    public byte get (long position){
+        return buffers[(int)(position >>> SHIFT)].get((int)(position & MASK));
+    }
+
+    /**
+     * Reads eight bytes in big-endian order by absolute position, does not change state of view.
+     * @param position - absolute position in source file, eight bytes from it should lie in file.
+     * @return - bytes of source file as long value.
+     */
+    public long getLong (long position){
+        ByteBuffer buf = buffers[(int)(position >>> SHIFT)];
+        int relative = (int)(position & MASK);
+        if(relative + Long.BYTES <= buf.limit()){
+            return buf.getLong(relative);
+        }
+        long value = 0;
+        for(int i = 0; i < Long.BYTES; i++){
+            value = value << 8 | get(position + i) & 0xFF;
+        }
+        return value;
+    }
+
+    /**
+     * Copies bytes of source file starting from the given position to the array.
+     * @param position - absolute position in source file.
+     * @param dst - target array.
+     * @param offset - first index of target array to write to.
+     * @param length - number of bytes to copy.
+     */
+    public void get (long position, byte[] dst, int offset, int length){
+        while (length > 0){
+            ByteBuffer buf = buffers[(int)(position >>> SHIFT)];
+            int relative = (int)(position & MASK);
+            int chunk = Math.min(length, buf.limit() - relative);
+            buf.position(relative);
+            buf.get(dst, offset, chunk);
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.sapashev;
+
+/**
+ * Amount of memory (in bytes) which may be spent on metadata of lines.
+ * Could be given as:
+ * 1) absolute size with suffix - "512k", "64m", "2g";
+ * 2) percentage of maximal heap size - "25%";
+ * 3) plain number - count of long values (legacy form of buffer size argument).
+ * Budget never exceeds MAX_SHARE of maximal heap size, which is also the default limit of direct memory
+ * used by off-heap arrays.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class MemoryBudget {
+    private static final double MAX_SHARE = 0.8;        //the rest of heap is left for buffers and JVM itself.
+    private final long bytes;
+
+    public MemoryBudget(long bytes){
+        long max = (long)(Runtime.getRuntime().maxMemory() * MAX_SHARE);
+        this.bytes = Math.max(Math.min(bytes, max), Long.BYTES);
+    }
+
+    /**
+     * Parses budget from the command-line argument.
+     * @param value - argument value.
+     * @return - memory budget.
+     */
+    public static MemoryBudget parse (String value){
+        String v = value.trim().toLowerCase();
+        char unit = v.charAt(v.length() - 1);
+        if(Character.isDigit(unit)){
+            return new MemoryBudget(Long.parseLong(v) * Long.BYTES);
+        }
+        double number = Double.parseDouble(v.substring(0, v.length() - 1));
+        switch (unit){
+            case '%': return new MemoryBudget((long)(Runtime.getRuntime().maxMemory() * number / 100));
+            case 'k': return new MemoryBudget((long)(number * 1024));
+            case 'm': return new MemoryBudget((long)(number * 1024 * 1024));
+            case 'g': return new MemoryBudget((long)(number * 1024 * 1024 * 1024));
+            default: throw new IllegalArgumentException(String.format("Wrong memory budget %s", value));
+        }
+    }
+
+    /**
+     * @return - budget in bytes.
+     */
+    public long bytes (){
+        return bytes;
+    }
+
+    /**
+     * Calculates how much entries could be held by each of consumers sharing this budget.
+     * @param entryCost - bytes spent on each entry, including scratch space.
+     * @param consumers - number of buffers (or threads) which share budget equally.
+     * @return - number of entries, at least one and not more than maximal size of array.
+     */
+    public int entries (int entryCost, int consumers){
+        return (int)Math.min(capacity(entryCost, consumers), Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * Calculates how much entries of off-heap arrays could be held by each of consumers sharing this budget.
+     * @param entryCost - bytes spent on each entry, including scratch space.
+     * @param consumers - number of buffers (or threads) which share budget equally.
+     * @return - number of entries, at least one.
+     */
+    public long capacity (int entryCost, int consumers){
+        return Math.max(1, bytes / ((long)entryCost * Math.max(consumers, 1)));
+    }
+
+    /**
+     * @param parts - number of parts.
+     * @return - budget of one of equal parts.
+     */
+    public MemoryBudget share (int parts){
+        return new MemoryBudget(bytes / Math.max(parts, 1));
+    }
+
+    @Override
+    public String toString (){
+        return String.format("%d bytes", bytes);
+    }
+}
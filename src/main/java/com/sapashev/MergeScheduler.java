@@ -0,0 +1,185 @@
+package com.sapashev;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Merges sorted runs to the one file through the merge tree executed by the fork/join pool.
+ * If there are not more than fanIn runs, they are merged by the one k-way merge.
+ * Otherwise runs are split to the consecutive groups of nearly equal total size, groups are merged by forked tasks
+ * (recursively, if group is still larger than fanIn) and results of groups are merged at last.
+ * Idle workers steal pending merges of other groups, number of merges reading and writing disk at the same time
+ * is limited by maxMerges, each of them uses equal share of memory budget.
+ * Groups are consecutive and results are merged in order of groups, so merging is stable.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class MergeScheduler {
+    private final Packer p;
+    private final int fanIn;
+    private final int parallelism;
+    private final Semaphore disks;
+    private final int memory;
+    private final SpillManager spills;
+    private SortListener listener = SortListener.NONE;
+
+    /**
+     * @param p - packer object which unpacks line length from packed long value.
+     * @param fanIn - maximal number of runs merged at once.
+     * @param maxMerges - maximal number of concurrent merges allowed by disk bandwidth.
+     * @param budget - memory shared by buffers of all concurrent merges.
+     * @param parallelism - number of worker threads.
+     * @param spills - manager which places merged files to the spill directories.
+     */
+    public MergeScheduler(Packer p, int fanIn, int maxMerges, MemoryBudget budget, int parallelism, SpillManager spills){
+        this.p = p;
+        this.fanIn = Math.max(fanIn, 2);
+        this.parallelism = Math.max(parallelism, 1);
+        this.disks = new Semaphore(Math.max(maxMerges, 1));
+        this.memory = (int)Math.min(budget.share(Math.max(maxMerges, 1)).bytes(), Integer.MAX_VALUE);
+        this.spills = spills;
+    }
+
+    /**
+     * @param listener - listener which is told about each merge and its pass.
+     */
+    public void setListener (SortListener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * Merges runs to the one file. Merged runs are deleted.
+     * @param runs - sorted runs in order of source.
+     * @return - file which contains all values of runs in sorted manner.
+     * @throws IOException
+     */
+    public File merge (List<File> runs) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new MergeTask(new ArrayList<>(runs), 0));
+        } catch (UncheckedIOException e){
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits runs to the consecutive groups of nearly equal total size in bytes.
+     * Each group contains not more runs than allowed by depth of the whole tree, so the tree is not deeper than needed.
+     * @param runs - runs to split, there are more than fanIn of them.
+     * @return - list of groups.
+     */
+    private List<List<File>> split (List<File> runs){
+        long leaves = fanIn;
+        while (leaves * fanIn < runs.size()){
+            leaves *= fanIn;
+        }
+        int groups = (int)((runs.size() + leaves - 1) / leaves);
+        long total = 0;
+        for(File f : runs){
+            total += f.length();
+        }
+        List<List<File>> result = new ArrayList<>(groups);
+        List<File> group = new ArrayList<>();
+        long accumulated = 0;
+        for(File f : runs){
+            group.add(f);
+            accumulated += f.length();
+            long threshold = total / groups * (result.size() + 1);
+            if(group.size() == leaves || (accumulated >= threshold && result.size() < groups - 1)){
+                result.add(group);
+                group = new ArrayList<>();
+            }
+        }
+        if(!group.isEmpty()){
+            result.add(group);
+        }
+        return result;
+    }
+
+    /**
+     * Merges runs with not more than fanIn runs at once, holding the disk permit while merging.
+     * @param pass - merge pass of result.
+     */
+    private File mergeOnce (List<File> runs, int pass) throws IOException {
+        ForkJoinPool.ManagedBlocker blocker = new ForkJoinPool.ManagedBlocker() {
+            private boolean acquired;
+
+            @Override
+            public boolean block () throws InterruptedException {
+                if(!acquired){
+                    disks.acquire();
+                    acquired = true;
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable (){
+                return acquired || (acquired = disks.tryAcquire());
+            }
+        };
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        try {
+            KWayMerger merger = new KWayMerger(p, fanIn, memory, spills);
+            merger.setListener(listener);
+            return merger.mergeOnce(runs, pass);
+        } finally {
+            disks.release();
+        }
+    }
+
+    /**
+     * Node of merge tree: merges its runs directly or forks merges of their groups first.
+     * Pass of node is the number of merges its values went through, so passes of the tree are counted from leaves.
+     */
+    private class MergeTask extends RecursiveTask<File> {
+        private static final long serialVersionUID = 1L;     //tasks are never serialized, ForkJoinTask is Serializable.
+        private final List<File> runs;
+        private int pass;                       //pass of runs, then of the result after compute().
+
+        MergeTask(List<File> runs, int pass){
+            this.runs = runs;
+            this.pass = pass;
+        }
+
+        @Override
+        protected File compute (){
+            try {
+                if(runs.size() <= fanIn){
+                    return mergeOnce(runs, ++pass);
+                }
+                List<MergeTask> tasks = new ArrayList<>();
+                for(List<File> group : split(runs)){
+                    tasks.add(new MergeTask(group, pass));
+                }
+                invokeAll(tasks);
+                List<File> results = new ArrayList<>(tasks.size());
+                int deepest = pass;
+                for(MergeTask t : tasks){
+                    results.add(t.join());
+                    deepest = Math.max(deepest, t.pass);
+                }
+                MergeTask last = new MergeTask(results, deepest);
+                File f = last.compute();
+                pass = last.pass;
+                return f;
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -2,8 +2,9 @@ package com.sapashev;
 
 /**
  * Contains method for packing/unpacking int and long values to the one compound long value;
- * minor - number of less significant bits to store length of line (measured in chars).
+ * minor - number of less significant bits to store length of line (measured in bytes).
  * major - number of more significant bits to store position of line start (measured in bytes).
+ * Layout is given explicitly or chosen by the size of source alone (see forSource()), without sampling of line lengths.
  * @author Arslan Sapashev
  * @since 28.12.2016
  * @version 1.0
@@ -13,14 +14,74 @@ public class Packer {
     private final int major;
 
     public Packer(int minor, int major){
-        if(minor > 32 || major <= 32){
-            this.minor = 26;
-            this.major = 37;
-        } else {
-            this.minor = minor;
-            this.major = major;
-        }
+        this(minor > 32 || major <= 32 ? layout(26, 37) : layout(minor, major));
+    }
+
+    /**
+     * @param layout - widths of length field (high half) and position field (low half), taken as they are.
+     */
+    private Packer(long layout){
+        this.minor = (int)(layout >>> 32);
+        this.major = (int)layout;
+    }
+
+    /**
+     * @return - packer of the given layout, which is not checked against the bounds of public constructor.
+     */
+    private static Packer exact (int minor, int major){
+        return new Packer(layout(minor, major));
+    }
+
+    private static long layout (int minor, int major){
+        return ((long)minor << 32) | major;
+    }
 
+    /**
+     * Chooses layout for the source file: position field is exactly as wide as needed to address every byte
+     * of file, all the rest bits of long value (but not more than 31) are given to the length field.
+     * So none of positions overflows and length overflows only in files larger than 2 GB with lines longer than
+     * 2^minor bytes, such lines are kept as wide records (see {@link WideRecords}).
+     * Narrower position field also lets copier pack position together with line index (gather mode) more often.
+     * Only the size of file is used, line lengths are not sampled: a sample could miss the rare long line,
+     * and unused high bits of length field cost nothing, radix sort skips digits above the longest line
+     * (see {@link Sorter}).
+     * @param size - size of source file in bytes.
+     * @return - packer.
+     */
+    public static Packer forSource (long size){
+        int major = Math.max(1, 64 - Long.numberOfLeadingZeros(size));
+        return exact(Math.min(31, 63 - major), major);
+    }
+
+    /**
+     * @param size - size of source file in bytes.
+     * @return - true if every position of file could be packed.
+     */
+    public boolean addresses (long size){
+        return size <= (1L << major);
+    }
+
+    /**
+     * @param length - length of line.
+     * @param position - position of line start.
+     * @return - true if pair could be packed to the one long value.
+     */
+    public boolean fits (long length, long position){
+        return length < (1L << minor) && length <= Integer.MAX_VALUE && position < (1L << major);
+    }
+
+    /**
+     * @return - number of less significant bits which store length of line.
+     */
+    public int minor (){
+        return minor;
+    }
+
+    /**
+     * @return - number of more significant bits which store position of line start.
+     */
+    public int major (){
+        return major;
     }
 
     /**
@@ -31,9 +92,10 @@ public class Packer {
      * @param length - length of line
      * @param position - number of line start in the file (in bytes)
      * @return packed long value;
+     * @throws RuntimeException - if length or position overflows its field.
      */
     public long packToLong(int length, long position){
-        if((length < (1 << minor)) && (position < (1L << major))){
+        if(fits(length, position)){
             long l = position;
             return ((l << minor) | length);
         } else {
@@ -53,7 +115,7 @@ public class Packer {
     /**
      * Unpacks and retrieves line length from the compound long value;
      * @param l - compound long value.
-     * @return - length of particular line estimated as count of characters.
+     * @return - length of particular line estimated as count of bytes.
      */
     public int getLength (long l){
         int i = (int)(l | 0);
@@ -0,0 +1,55 @@
+package com.sapashev;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Measures wall and CPU time of one phase and reports them to the listener when stopped:
+ * PhaseTimer timer = PhaseTimer.start(listener, Phase.SCAN);
+ * try { ... } finally { timer.stop(); }
+ * CPU time is the process CPU time, so it covers all threads working in phase.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+class PhaseTimer {
+    private static final OperatingSystemMXBean OS = ManagementFactory.getOperatingSystemMXBean();
+    private final SortListener listener;
+    private final SortListener.Phase phase;
+    private final long wall;
+    private final long cpu;
+
+    private PhaseTimer(SortListener listener, SortListener.Phase phase){
+        this.listener = listener;
+        this.phase = phase;
+        this.wall = System.nanoTime();
+        this.cpu = cpuNanos();
+    }
+
+    /**
+     * Tells listener that phase is started.
+     * @return - timer which finishes phase when stopped.
+     */
+    static PhaseTimer start (SortListener listener, SortListener.Phase phase){
+        listener.phaseStarted(phase);
+        return new PhaseTimer(listener, phase);
+    }
+
+    /**
+     * Tells listener that phase is finished.
+     */
+    void stop (){
+        long used = cpu < 0 ? -1 : cpuNanos() - cpu;
+        listener.phaseFinished(phase, System.nanoTime() - wall, used);
+    }
+
+    /**
+     * @return - CPU time of process in nanoseconds, or -1 if it is unknown.
+     */
+    private static long cpuNanos (){
+        if(OS instanceof com.sun.management.OperatingSystemMXBean){
+            return ((com.sun.management.OperatingSystemMXBean)OS).getProcessCpuTime();
+        }
+        return -1;
+    }
+}
@@ -11,10 +11,21 @@ import java.util.List;
  * @author Arslan Sapashev
  * @since 28.12.2016
  * @version 1.0
+ * @deprecated lengths are measured in chars and positions are estimated, use {@link ByteScanner} which finds
+ * exact byte positions and lengths without creating String per line.
  */
+@Deprecated
 public class Reader {
     private final int SEPARATOR = ByteBuffer.wrap(System.getProperty("line.separator").getBytes()).limit();
     //TODO define getBytes encoding as entry of argument list
+    private SortListener listener = SortListener.NONE;
+
+    /**
+     * @param listener - listener which is told the bytes and lines read by each invocation.
+     */
+    public void setListener (SortListener listener){
+        this.listener = listener;
+    }
 
     /**
      * Fills metas array with line position and length data.
@@ -28,6 +39,7 @@ public class Reader {
         String line;
         int counter = 0;
         boolean isEOF = false;
+        long start = p.position;
         c.counter = 0;
 
         while (counter < bufferSize){
@@ -41,6 +53,7 @@ public class Reader {
             }
         }
         c.counter = counter;
+        listener.scanned(p.position - start, counter);
         return isEOF;
     }
 }
@@ -0,0 +1,32 @@
+package com.sapashev;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Sorted sequence of packed pairs (position:line length) which refer to lines of source file.
+ * Copier reads lines of source file in order of reference.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public interface Reference extends Closeable {
+
+    boolean hasNext ();
+
+    /**
+     * @return - next packed value, should be invoked only if hasNext() returns true.
+     * @throws IOException
+     */
+    long next () throws IOException;
+
+    /**
+     * @return - total number of values.
+     */
+    long count ();
+
+    /**
+     * @return - maximal line length among all values.
+     */
+    int maxLength ();
+}
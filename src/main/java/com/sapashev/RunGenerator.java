@@ -0,0 +1,459 @@
+package com.sapashev;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Produces sorted runs (temp files with sorted packed values) from the source file.
+ * Source file is split to the several byte ranges, each range starts at the beginning of some line.
+ * Every range is scanned by its own thread, filled buffers are sorted and saved to temp files
+ * by threads of the next pipeline stages.
+ * Runs are returned in order of ranges, so runs of the first range go first.
+ * If source is not split, the only sorter uses parallel radix sort.
+ * Packed values are held in off-heap arrays (see {@link LongArray}), so neither buffers nor the whole in-memory
+ * reference load garbage collector and number of lines is not limited by size of java array.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class RunGenerator {
+    private static final long MIN_RANGE = 1024 * 1024;     //smaller ranges are not worth of separate thread.
+    private static final long SAMPLE = 1024 * 1024;        //bytes scanned to estimate number of lines.
+    private static final int BLOCK = 1 << 20;              //values in each block of in-memory scanning.
+    private final Path source;
+    private final Packer packer;
+    private final MemoryBudget budget;
+    private final SpillManager spills;
+    private final Selection filter;
+    private final int concurrencyLevel;
+    private final Stage scanStage = new Stage("scan");
+    private final Stage sortStage = new Stage("sort");
+    private final Stage spillStage = new Stage("spill");
+    private WideRecords wide = new WideRecords();
+    private SortListener listener = SortListener.NONE;
+
+    /**
+     * @param source - source file.
+     * @param packer - packer object which packs pairs (position:line length) to the long value.
+     * @param budget - memory which may be spent on buffers and sort scratch arrays of all threads.
+     * @param concurrencyLevel - maximal number of ranges scanned concurrently.
+     * @param spills - manager which places runs to the spill directories.
+     */
+    public RunGenerator(Path source, Packer packer, MemoryBudget budget, int concurrencyLevel, SpillManager spills){
+        this(source, packer, budget, concurrencyLevel, spills, null);
+    }
+
+    /**
+     * @param source - source file.
+     * @param packer - packer object which packs pairs (position:line length) to the long value.
+     * @param budget - memory which may be spent on buffers and sort scratch arrays of all threads.
+     * @param concurrencyLevel - maximal number of ranges scanned concurrently.
+     * @param spills - manager which places runs to the spill directories.
+     * @param filter - length range of lines to be sorted, other lines are dropped right after scan; null for all lines.
+     */
+    public RunGenerator(Path source, Packer packer, MemoryBudget budget, int concurrencyLevel, SpillManager spills,
+                        Selection filter){
+        this.source = source;
+        this.packer = packer;
+        this.budget = budget;
+        this.spills = spills;
+        this.filter = filter;
+        this.concurrencyLevel = Math.max(concurrencyLevel, 1);
+    }
+
+    /**
+     * Scans all ranges concurrently and saves their sorted runs to the temp files.
+     * Scanning, sorting and spilling are pipelined: scanner of each range fills the next free buffer
+     * while previous ones are sorted and saved by threads of other stages. Stages are connected by bounded queues,
+     * there are two buffers per range.
+     * Size of run is derived from the memory budget: it is shared equally by all buffers and scratch arrays
+     * of sorters (each entry of them is one long value), and buffer is flushed to the run when it is full.
+     * Off-heap buffers are freed when all stages are stopped, whether runs are saved or some stage fails.
+     * If some stage fails, runs already saved are deleted.
+     * @return list of temp files in order of source ranges.
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public List<File> generate () throws IOException, InterruptedException, ExecutionException {
+        wide = new WideRecords();
+        long[] bounds = ranges(source, concurrencyLevel);
+        int parts = bounds.length - 1;
+        int sorters = parts;
+        int spillers = Math.min(parts, 2);
+        int buffers = parts * 2;
+        long batch = budget.capacity(Long.BYTES, buffers + sorters);
+        BlockingQueue<LongArray> free = new ArrayBlockingQueue<>(buffers);
+        List<LongArray> allocated = new ArrayList<>(buffers);
+        BlockingQueue<Batch> toSort = new ArrayBlockingQueue<>(buffers + sorters);
+        BlockingQueue<Batch> toSpill = new ArrayBlockingQueue<>(buffers + spillers);
+        Map<Long, File> runs = new ConcurrentSkipListMap<>();
+        AtomicInteger scanning = new AtomicInteger(parts);
+        AtomicInteger sorting = new AtomicInteger(sorters);
+
+        ExecutorService service = Executors.newFixedThreadPool(parts + sorters + spillers);
+        CompletionService<Void> tasks = new ExecutorCompletionService<>(service);
+        boolean completed = false;
+        try {
+            for(int i = 0; i < buffers; i++){
+                LongArray buffer = new LongArray(batch);
+                allocated.add(buffer);
+                free.add(buffer);
+            }
+            for(int i = 0; i < parts; i++){
+                final int range = i;
+                tasks.submit(() -> scan(range, bounds[range], bounds[range + 1], free, toSort, scanning, sorters));
+            }
+            for(int i = 0; i < sorters; i++){
+                tasks.submit(() -> sort(sorters == 1 && concurrencyLevel > 1, toSort, toSpill, sorting, spillers));
+            }
+            for(int i = 0; i < spillers; i++){
+                tasks.submit(() -> spill(toSpill, free, runs));
+            }
+            for(int i = 0; i < parts + sorters + spillers; i++){
+                tasks.take().get();
+            }
+            completed = true;
+        } finally {
+            service.shutdownNow();
+            if(stop(service)){
+                allocated.forEach(LongArray::close);        //buffers of all stages and queues.
+            }
+            if(!completed){
+                runs.values().forEach(spills::delete);
+            }
+        }
+        return new ArrayList<>(runs.values());
+    }
+
+    /**
+     * Sorts all lines in memory if their packed values fit the memory budget together with the scratch array of sort.
+     * Whole source file surely fits if it is not larger than the number of entries (each line takes at least one byte),
+     * otherwise number of lines is estimated by the sample from the beginning of file.
+     * Ranges are scanned concurrently to the chains of off-heap blocks, which are joined to one off-heap array
+     * and sorted by parallel radix sort.
+     * @return - sorted packed values of all lines, which should be closed by caller, or null if they do not fit the budget.
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public LongArray sortInMemory () throws IOException, InterruptedException, ExecutionException {
+        long capacity = budget.capacity(Long.BYTES, 2);
+        if(Files.size(source) > capacity && estimateLines() > capacity * 0.9){
+            return null;
+        }
+        wide = new WideRecords();
+        long[] bounds = ranges(source, concurrencyLevel);
+        int parts = bounds.length - 1;
+        AtomicLong reserved = new AtomicLong();
+        int block = (int)Math.max(1, Math.min(BLOCK, capacity / parts));
+        ExecutorService service = Executors.newFixedThreadPool(parts);
+        List<List<LongArray>> chains = new ArrayList<>(parts);
+        long[] counts = new long[parts];
+        boolean fits = true;
+        boolean completed = false;
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>(parts);
+            for(int i = 0; i < parts; i++){
+                List<LongArray> chain = new ArrayList<>();
+                chains.add(chain);
+                final int range = i;
+                futures.add(service.submit(() -> scanToMemory(bounds[range], bounds[range + 1], block, capacity,
+                        reserved, chain, counts, range)));
+            }
+            for(Future<Boolean> f : futures){
+                fits &= f.get();
+            }
+            completed = true;
+        } finally {
+            service.shutdownNow();
+            if((!completed || !fits) && stop(service)){
+                chains.forEach(chain -> chain.forEach(LongArray::close));
+            }
+        }
+        if(!fits){
+            return null;
+        }
+        long total = 0;
+        for(int i = 0; i < parts; i++){
+            total += chains.get(i).isEmpty() ? 0 : (long)(chains.get(i).size() - 1) * block + counts[i];
+        }
+        LongArray metas = new LongArray(total);
+        long size = 0;
+        for(int i = 0; i < parts; i++){
+            List<LongArray> chain = chains.get(i);
+            for(int y = 0; y < chain.size(); y++){
+                long n = y < chain.size() - 1 ? block : counts[i];
+                LongArray.copy(chain.get(y), 0, metas, size, n);
+                chain.get(y).close();
+                size += n;
+            }
+            chain.clear();
+        }
+        try(Sorter sorter = new Sorter(concurrencyLevel > 1)){
+            sorter.setListener(listener);
+            sorter.sort(metas, size, packer);
+        }
+        return metas;
+    }
+
+    /**
+     * Scans the range to the chain of blocks, reserving room of each block from the common capacity.
+     * @param counts - number of values in the last block of chain of each range.
+     * @return - false if capacity is exhausted.
+     * @throws IOException
+     */
+    private boolean scanToMemory (long from, long to, int block, long capacity, AtomicLong reserved,
+                                  List<LongArray> chain, long[] counts, int range) throws IOException {
+        try(ByteScanner scanner = new ByteScanner(source, from, to, ByteScanner.DEFAULT_WINDOW, wide)){
+            while (!scanner.isEOF()){
+                if(chain.isEmpty() || counts[range] == block){
+                    if(reserved.addAndGet(block) > capacity){
+                        return false;
+                    }
+                    chain.add(new LongArray(block));
+                    counts[range] = 0;
+                }
+                LongArray last = chain.get(chain.size() - 1);
+                long position = scanner.position();
+                long scanned = scanner.scan(last, counts[range], block - counts[range], packer);
+                listener.scanned(scanner.position() - position, scanned);
+                counts[range] += filter == null ? scanned : filter.filter(last, counts[range], scanned, packer);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits till all threads of service are stopped after shutdownNow(), so their off-heap buffers may be freed.
+     * @return - false if current thread is interrupted while waiting, then buffers are left to garbage collector.
+     */
+    private static boolean stop (ExecutorService service){
+        try {
+            return service.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Estimates number of lines by the number of lines in the first SAMPLE bytes of source file.
+     * @return - estimated number of lines.
+     * @throws IOException
+     */
+    private long estimateLines () throws IOException {
+        long size = Files.size(source);
+        long sample = Math.min(size, SAMPLE);
+        long[] metas = new long[4096];
+        long lines = 0;
+        try(ByteScanner scanner = new ByteScanner(source, 0, sample, ByteScanner.DEFAULT_WINDOW, new WideRecords())){
+            while (!scanner.isEOF()){
+                lines += scanner.scan(metas, metas.length, packer);
+            }
+        }
+        return sample == 0 ? 0 : lines * size / sample;
+    }
+
+    /**
+     * @param listener - listener of scanned bytes, sorts and produced runs.
+     */
+    public void setListener (SortListener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * @return - lines of the last generation which could not be packed, they go after all lines of runs.
+     */
+    public WideRecords wideRecords (){
+        return wide;
+    }
+
+    /**
+     * @return - busy and idle time of scan, sort and spill stages of the last generation.
+     */
+    public List<Stage> stages (){
+        return Arrays.asList(scanStage, sortStage, spillStage);
+    }
+
+    /**
+     * Scan stage: fills free buffers with lines of the range and passes them to the sort stage.
+     * The last finished scanner tells all sorters to stop.
+     */
+    private Void scan (int range, long from, long to, BlockingQueue<LongArray> free, BlockingQueue<Batch> toSort,
+                       AtomicInteger scanning, int sorters) throws IOException, InterruptedException {
+        try(ByteScanner scanner = new ByteScanner(source, from, to, ByteScanner.DEFAULT_WINDOW, wide)){
+            int seq = 0;
+            while (!scanner.isEOF()){
+                long start = System.nanoTime();
+                LongArray metas = free.take();
+                long taken = System.nanoTime();
+                long position = scanner.position();
+                long count = scanner.scan(metas, 0, metas.size(), packer);
+                listener.scanned(scanner.position() - position, count);
+                if(filter != null){
+                    count = filter.filter(metas, 0, count, packer);
+                }
+                long scanned = System.nanoTime();
+                if(count == 0){
+                    free.put(metas);
+                    scanStage.busy(scanned - taken);
+                    continue;
+                }
+                toSort.put(new Batch(range, seq++, metas, count));
+                scanStage.idle(taken - start + System.nanoTime() - scanned);
+                scanStage.busy(scanned - taken);
+            }
+        } finally {
+            if(scanning.decrementAndGet() == 0){
+                for(int i = 0; i < sorters; i++){
+                    toSort.put(Batch.LAST);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sort stage: sorts filled buffers and passes them to the spill stage.
+     * The last finished sorter tells all spillers to stop.
+     */
+    private Void sort (boolean parallel, BlockingQueue<Batch> toSort, BlockingQueue<Batch> toSpill,
+                       AtomicInteger sorting, int spillers) throws InterruptedException {
+        try(Sorter sorter = new Sorter(parallel)){
+            sorter.setListener(listener);
+            while (true){
+                long start = System.nanoTime();
+                Batch b = toSort.take();
+                long taken = System.nanoTime();
+                if(b == Batch.LAST){
+                    sortStage.idle(taken - start);
+                    break;
+                }
+                sorter.sort(b.metas, b.count, packer);
+                long sorted = System.nanoTime();
+                toSpill.put(b);
+                sortStage.idle(taken - start + System.nanoTime() - sorted);
+                sortStage.busy(sorted - taken);
+            }
+        } finally {
+            if(sorting.decrementAndGet() == 0){
+                for(int i = 0; i < spillers; i++){
+                    toSpill.put(Batch.LAST);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Spill stage: saves sorted buffers to the temp files and returns buffers to the scan stage.
+     */
+    private Void spill (BlockingQueue<Batch> toSpill, BlockingQueue<LongArray> free, Map<Long, File> runs)
+            throws IOException, InterruptedException {
+        Combiner combiner = new Combiner(spills);
+        combiner.setListener(listener);
+        while (true){
+            long start = System.nanoTime();
+            Batch b = toSpill.take();
+            long taken = System.nanoTime();
+            if(b == Batch.LAST){
+                spillStage.idle(taken - start);
+                break;
+            }
+            runs.put(((long)b.range << 32) | b.seq, combiner.saveToTempFile(b.metas, b.count, packer));
+            long spilled = System.nanoTime();
+            free.put(b.metas);
+            spillStage.idle(taken - start + System.nanoTime() - spilled);
+            spillStage.busy(spilled - taken);
+        }
+        return null;
+    }
+
+    /**
+     * Splits file to the byte ranges of nearly equal size. Each raw boundary is moved forward to the
+     * beginning of the next line, so none of lines is divided between two ranges.
+     * @param source - source file.
+     * @param parts - desired number of ranges.
+     * @return - array of boundaries, range i lies between bounds[i] (inclusive) and bounds[i + 1] (exclusive).
+     * @throws IOException
+     */
+    public static long[] ranges (Path source, int parts) throws IOException {
+        try(FileChannel fc = FileChannel.open(source, StandardOpenOption.READ)){
+            long size = fc.size();
+            parts = (int)Math.max(1, Math.min(parts, size / MIN_RANGE));
+            List<Long> bounds = new ArrayList<>(parts + 1);
+            bounds.add(0L);
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            for(int i = 1; i < parts; i++){
+                long bound = nextLineStart(fc, size / parts * i, buf);
+                if(bound > bounds.get(bounds.size() - 1) && bound < size){
+                    bounds.add(bound);
+                }
+            }
+            bounds.add(size);
+            long[] result = new long[bounds.size()];
+            for(int i = 0; i < result.length; i++){
+                result[i] = bounds.get(i);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Finds start of the first line which begins at the given position or after it.
+     * @param fc - source file channel.
+     * @param position - raw boundary.
+     * @param buf - reusable buffer.
+     * @return - position next to the first '\n' found from (position - 1), or size of file if there is no such one.
+     * @throws IOException
+     */
+    private static long nextLineStart (FileChannel fc, long position, ByteBuffer buf) throws IOException {
+        long current = position - 1;
+        while(current < fc.size()){
+            buf.clear();
+            int read = fc.read(buf, current);
+            if(read <= 0){
+                break;
+            }
+            for(int i = 0; i < read; i++){
+                if(buf.get(i) == '\n'){
+                    return current + i + 1;
+                }
+            }
+            current += read;
+        }
+        return fc.size();
+    }
+
+    /**
+     * Buffer filled with packed values of lines from the range of source file.
+     * Range and sequence number of buffer define order of its run among other runs.
+     */
+    private static class Batch {
+        static final Batch LAST = new Batch(-1, -1, null, 0);      //tells stage that there is no more buffers.
+        final int range;
+        final int seq;
+        final LongArray metas;
+        final long count;
+
+        Batch(int range, int seq, LongArray metas, long count){
+            this.range = range;
+            this.seq = seq;
+            this.metas = metas;
+            this.count = count;
+        }
+    }
+}
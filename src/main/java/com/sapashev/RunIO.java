@@ -0,0 +1,105 @@
+package com.sapashev;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background I/O threads shared by all run readers and writers.
+ * Readers prefetch the next block of run file and writers flush the filled block while the caller goes on
+ * with the other buffer, so merge loop waits for disk only if disk is slower than merging.
+ * Threads are daemons and only do positional reads and writes, so tasks never wait for each other.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+final class RunIO {
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final ExecutorService SERVICE;
+
+    static {
+        AtomicInteger number = new AtomicInteger();
+        ThreadPoolExecutor service = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "run-io-" + number.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        service.allowCoreThreadTimeOut(true);
+        SERVICE = service;
+    }
+
+    private RunIO(){
+    }
+
+    /**
+     * Reads bytes from the channel to the buffer in background till the buffer is full.
+     * @param channel - source channel.
+     * @param buffer - target buffer, should not be touched till returned future is done.
+     * @param position - position in file of the first byte to read.
+     * @return - future which completes when the buffer is filled.
+     */
+    static Future<?> read (FileChannel channel, ByteBuffer buffer, long position){
+        return SERVICE.submit(() -> {
+            long at = position;
+            try {
+                while (buffer.hasRemaining()){
+                    int read = channel.read(buffer, at);
+                    if(read < 0){
+                        throw new IOException("Unexpected end of run file");
+                    }
+                    at += read;
+                }
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Writes remaining bytes of the buffer to the channel in background.
+     * @param channel - target channel.
+     * @param buffer - source buffer, should not be touched till returned future is done.
+     * @param position - position in file of the first byte to write.
+     * @return - future which completes when all bytes are written.
+     */
+    static Future<?> write (FileChannel channel, ByteBuffer buffer, long position){
+        return SERVICE.submit(() -> {
+            long at = position;
+            try {
+                while (buffer.hasRemaining()){
+                    at += channel.write(buffer, at);
+                }
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Waits for the background operation.
+     * @param pending - future of operation, may be null.
+     * @throws IOException - if operation failed or waiting thread was interrupted.
+     */
+    static void await (Future<?> pending) throws IOException {
+        if(pending == null){
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for run I/O");
+        } catch (ExecutionException e){
+            Throwable cause = e.getCause();
+            if(cause instanceof UncheckedIOException){
+                throw ((UncheckedIOException)cause).getCause();
+            }
+            throw new IOException(cause);
+        }
+    }
+}
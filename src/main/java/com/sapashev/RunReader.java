@@ -0,0 +1,212 @@
+package com.sapashev;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads packed long values from the run file written by RunWriter.
+ * Blocks are decoded value by value while streaming through the large read buffer.
+ * Prefix of key written with each value of run with prefixes is returned by prefix().
+ * Reader owns two buffers: while values are decoded from one of them, the next part of file is prefetched
+ * to the other one by background thread (see {@link RunIO}).
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class RunReader implements Reference {
+    public static final int DEFAULT_BUFFER = 1024 * 1024;
+    private static final int MAX_ENTRY = RunWriter.MAX_VARINT * 6;       //block header, group header, position and prefix.
+    private final FileChannel channel;
+    private final Packer p;
+    private final long count;
+    private final int maxLength;
+    private final boolean prefixed;
+    private final long end;                 //position of trailer in file.
+    private ByteBuffer buffer;              //buffer being decoded.
+    private ByteBuffer spare;               //buffer being prefetched.
+    private Future<?> pending;              //prefetch of spare buffer, null if the whole file has been read.
+    private long readPosition;              //position in file of the next byte to prefetch.
+    private long remaining;                 //number of values which are not yet returned.
+    private int blockLeft;                  //number of values left in current block.
+    private long groupLeft;                 //number of values left in current group of equal lengths.
+    private int length;
+    private long position;
+    private long prefix;
+
+    /**
+     * @param file - run file.
+     * @param p - packer object which packs pairs (position:line length) to the long value.
+     * @param bufferSize - size of both read buffers in bytes.
+     * @throws IOException
+     */
+    public RunReader(File file, Packer p, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.p = p;
+        ByteBuffer trailer = ByteBuffer.allocate(RunWriter.TRAILER);
+        long size = channel.size();
+        if(size < RunWriter.TRAILER){
+            channel.close();
+            throw new IOException(String.format("%s is not a run file", file));
+        }
+        while (trailer.hasRemaining()){
+            channel.read(trailer, size - RunWriter.TRAILER + trailer.position());
+        }
+        trailer.flip();
+        this.count = trailer.getLong();
+        this.maxLength = trailer.getInt();
+        int magic = trailer.getInt();
+        this.prefixed = magic == RunWriter.PREFIXED_MAGIC;
+        if(magic != RunWriter.MAGIC && !prefixed){
+            channel.close();
+            throw new IOException(String.format("%s is not a run file", file));
+        }
+        this.remaining = count;
+        this.end = size - RunWriter.TRAILER;
+        int half = Math.max(bufferSize / 2, MAX_ENTRY * 2);
+        this.buffer = ByteBuffer.allocate(half);
+        this.buffer.limit(0);
+        this.spare = ByteBuffer.allocate(half);
+        prefetch();
+    }
+
+    @Override
+    public boolean hasNext (){
+        return remaining > 0;
+    }
+
+    /**
+     * @return - next value of run, should be invoked only if hasNext() returns true.
+     * @throws IOException
+     */
+    @Override
+    public long next () throws IOException {
+        if(buffer.remaining() < MAX_ENTRY){
+            fill();
+        }
+        if(blockLeft == 0){
+            blockLeft = (int)getVarint();
+            getVarint();                    //size of block in bytes, needed only to skip blocks.
+            length = 0;
+            position = 0;
+            prefix = 0;
+        }
+        if(groupLeft == 0){
+            length += (int)unZigZag(getVarint());
+            groupLeft = getVarint();
+        }
+        position += unZigZag(getVarint());
+        if(prefixed){
+            prefix += unZigZag(getVarint());
+        }
+        groupLeft--;
+        blockLeft--;
+        remaining--;
+        return p.packToLong(length, position);
+    }
+
+    /**
+     * @return - prefix of key of the value returned by the last next(), zero if run has no prefixes.
+     */
+    public long prefix (){
+        return prefix;
+    }
+
+    /**
+     * @return - true if values of run are written with prefixes of their keys.
+     */
+    public boolean isPrefixed (){
+        return prefixed;
+    }
+
+    /**
+     * @return - total number of values in run.
+     */
+    @Override
+    public long count (){
+        return count;
+    }
+
+    /**
+     * @return - maximal length of line in run.
+     */
+    @Override
+    public int maxLength (){
+        return maxLength;
+    }
+
+    /**
+     * Starts background read of the next part of file to the spare buffer.
+     * First MAX_ENTRY bytes of buffer are left free for the undecoded tail of the current buffer.
+     */
+    private void prefetch (){
+        if(readPosition >= end){
+            pending = null;
+            return;
+        }
+        spare.clear();
+        spare.position(MAX_ENTRY);
+        spare.limit((int)Math.min(spare.capacity(), MAX_ENTRY + end - readPosition));
+        long position = readPosition;
+        readPosition += spare.remaining();
+        pending = RunIO.read(channel, spare, position);
+    }
+
+    /**
+     * Waits for prefetched buffer, moves the undecoded tail of the current buffer in front of it
+     * and swaps buffers.
+     * @throws IOException
+     */
+    private void fill () throws IOException {
+        if(pending == null){
+            return;
+        }
+        RunIO.await(pending);
+        ByteBuffer next = spare;
+        int limit = next.position();
+        int start = MAX_ENTRY - buffer.remaining();
+        next.position(start);
+        next.put(buffer);
+        next.limit(limit);
+        next.position(start);
+        spare = buffer;
+        buffer = next;
+        prefetch();
+    }
+
+    private long getVarint (){
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static long unZigZag (long value){
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    public void close () throws IOException {
+        try {
+            if(pending != null){
+                pending.cancel(false);
+                try {
+                    RunIO.await(pending);
+                } catch (IOException | CancellationException ignore){
+                    //prefetched data is not needed anymore.
+                }
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.sapashev;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Writes packed long values to the run file in the compact block format.
+ * Each block holds up to BLOCK values and consists of:
+ * 1) varint number of values in block;
+ * 2) varint size of encoded values in bytes;
+ * 3) groups of values with equal length, each group is zig-zag varint delta of length from the previous group,
+ * varint number of values in group and zig-zag varint delta of position from the previous value for each value.
+ * Run of records with prefixes of keys (see {@link KeyedSorter}) has the prefix column: zig-zag varint delta
+ * of prefix from the previous value follows the position of each value. Runs are sorted, so prefixes of
+ * consecutive values of equal length do not decrease and their deltas are small.
+ * Deltas start from zero in each block. In sorted run consecutive lengths are equal or close to each other,
+ * so most of values take one or two bytes instead of eight.
+ * File ends with trailer: number of values (long), maximal length (int) and MAGIC (int), or PREFIXED_MAGIC
+ * if run has the prefix column.
+ * Writer owns two buffers: while one of them is written to disk by background thread (see {@link RunIO}),
+ * values are encoded to the other one.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class RunWriter implements Closeable {
+    public static final int DEFAULT_BUFFER = 1024 * 1024;
+    static final int BLOCK = 8192;
+    static final int MAGIC = 0x41525352;
+    static final int PREFIXED_MAGIC = 0x4152534B;
+    static final int TRAILER = Long.BYTES + Integer.BYTES * 2;
+    static final int MAX_VARINT = 10;
+    private final FileChannel channel;
+    private final Packer p;
+    private ByteBuffer buffer;                       //buffer being filled.
+    private ByteBuffer spare;                        //buffer being written.
+    private Future<?> pending;                       //write of spare buffer.
+    private long writePosition;                      //position in file of the next byte to write.
+    private final long[] block = new long[BLOCK];
+    private final long[] prefixes;                   //prefixes of values of current block, null if run has no prefixes.
+    private final byte[] encoded;
+    private int size;                                //number of values in current block.
+    private long count;
+    private int maxLength;
+
+    /**
+     * @param file - run file, will be truncated if exists.
+     * @param p - packer object which unpacks pairs (position:line length) from packed long value.
+     * @param bufferSize - size of both write buffers in bytes.
+     * @throws IOException
+     */
+    public RunWriter(File file, Packer p, int bufferSize) throws IOException {
+        this(file, p, bufferSize, false);
+    }
+
+    /**
+     * @param file - run file, will be truncated if exists.
+     * @param p - packer object which unpacks pairs (position:line length) from packed long value.
+     * @param bufferSize - size of both write buffers in bytes.
+     * @param prefixed - true if each value is written with the prefix of its key (see {@link #write(long, long)}).
+     * @throws IOException
+     */
+    public RunWriter(File file, Packer p, int bufferSize, boolean prefixed) throws IOException {
+        this.prefixes = prefixed ? new long[BLOCK] : null;
+        this.encoded = new byte[BLOCK * (MAX_VARINT * (prefixed ? 4 : 3))];
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        int half = Math.max(bufferSize / 2, MAX_VARINT * 2 + TRAILER);
+        this.buffer = ByteBuffer.allocate(half);
+        this.spare = ByteBuffer.allocate(half);
+        this.p = p;
+    }
+
+    public void write (long value) throws IOException {
+        write(value, 0);
+    }
+
+    /**
+     * @param value - packed value.
+     * @param prefix - prefix of key of line, it is dropped if run has no prefixes.
+     * @throws IOException
+     */
+    public void write (long value, long prefix) throws IOException {
+        block[size] = value;
+        if(prefixes != null){
+            prefixes[size] = prefix;
+        }
+        if(++size == BLOCK){
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes first "size" values of array.
+     * @param values - array of packed values.
+     * @param size - number of values to be written.
+     * @throws IOException
+     */
+    public void write (long[] values, int size) throws IOException {
+        for(int i = 0; i < size; i++){
+            write(values[i]);
+        }
+    }
+
+    /**
+     * Writes first "size" values of off-heap array, copying them to the current block in bulk.
+     * @param values - array of packed values.
+     * @param size - number of values to be written.
+     * @throws IOException
+     * @throws IllegalStateException if run has prefixes.
+     */
+    public void write (LongArray values, long size) throws IOException {
+        if(prefixes != null){
+            throw new IllegalStateException("Values of run with prefixes are written one by one");
+        }
+        long written = 0;
+        while (written < size){
+            int chunk = (int)Math.min(BLOCK - this.size, size - written);
+            values.get(written, block, this.size, chunk);
+            this.size += chunk;
+            written += chunk;
+            if(this.size == BLOCK){
+                writeBlock();
+            }
+        }
+    }
+
+    /**
+     * Encodes values of current block and puts them to the write buffer.
+     * @throws IOException
+     */
+    private void writeBlock () throws IOException {
+        int length = 0;
+        long position = 0;
+        long prefix = 0;
+        int used = 0;
+        int i = 0;
+        while (i < size){
+            int groupLength = p.getLength(block[i]);
+            int end = i + 1;
+            while (end < size && p.getLength(block[end]) == groupLength){
+                end++;
+            }
+            used = putVarint(encoded, used, zigZag(groupLength - length));
+            used = putVarint(encoded, used, end - i);
+            for(; i < end; i++){
+                long current = p.getPosition(block[i]);
+                used = putVarint(encoded, used, zigZag(current - position));
+                position = current;
+                if(prefixes != null){
+                    used = putVarint(encoded, used, zigZag(prefixes[i] - prefix));
+                    prefix = prefixes[i];
+                }
+            }
+            length = groupLength;
+            maxLength = Math.max(maxLength, groupLength);
+        }
+        ensure(MAX_VARINT * 2);
+        putVarint(buffer, size);
+        putVarint(buffer, used);
+        int offset = 0;
+        while (offset < used){
+            ensure(1);
+            int chunk = Math.min(buffer.remaining(), used - offset);
+            buffer.put(encoded, offset, chunk);
+            offset += chunk;
+        }
+        count += size;
+        size = 0;
+    }
+
+    private void ensure (int bytes) throws IOException {
+        if(buffer.remaining() < bytes){
+            flush();
+        }
+    }
+
+    /**
+     * Passes filled buffer to the background write and continues with the spare one,
+     * waits only if the previous write has not finished yet.
+     * @throws IOException
+     */
+    private void flush () throws IOException {
+        RunIO.await(pending);
+        buffer.flip();
+        ByteBuffer out = buffer;
+        long position = writePosition;
+        writePosition += out.remaining();
+        pending = RunIO.write(channel, out, position);
+        buffer = spare;
+        buffer.clear();
+        spare = out;
+    }
+
+    /**
+     * Appends blocks of runs to the end of the target run, so the target holds values of all of them in order.
+     * Blocks do not depend on each other, so they are copied by the file system as they are,
+     * only the trailer of target is rewritten.
+     * @param target - run file to append to.
+     * @param runs - run files to be appended, they are left untouched.
+     * @throws IOException - if runs are not of the same kind as target, with or without prefixes.
+     */
+    static void concat (File target, List<File> runs) throws IOException {
+        try(FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            ByteBuffer trailer = trailer(out);
+            long count = trailer.getLong();
+            int maxLength = trailer.getInt();
+            int magic = trailer.getInt();
+            long position = out.size() - TRAILER;
+            for(File run : runs){
+                try(FileChannel in = FileChannel.open(run.toPath(), StandardOpenOption.READ)){
+                    ByteBuffer t = trailer(in);
+                    count += t.getLong();
+                    maxLength = Math.max(maxLength, t.getInt());
+                    if(t.getInt() != magic){
+                        throw new IOException(String.format("%s and %s are runs of different kinds", target, run));
+                    }
+                    long end = in.size() - TRAILER;
+                    for(long from = 0; from < end; ){
+                        long moved = in.transferTo(from, end - from, out.position(position));
+                        from += moved;
+                        position += moved;
+                    }
+                }
+            }
+            trailer.clear();
+            trailer.putLong(count).putInt(maxLength).putInt(magic).flip();
+            while (trailer.hasRemaining()){
+                position += out.write(trailer, position);
+            }
+            out.truncate(position);
+        }
+    }
+
+    /**
+     * @return - trailer of run file, positioned at the number of values.
+     * @throws IOException - if file is not a run file.
+     */
+    private static ByteBuffer trailer (FileChannel channel) throws IOException {
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER);
+        long size = channel.size();
+        if(size < TRAILER){
+            throw new IOException("Not a run file");
+        }
+        while (trailer.hasRemaining()){
+            channel.read(trailer, size - TRAILER + trailer.position());
+        }
+        trailer.flip();
+        int magic = trailer.getInt(TRAILER - Integer.BYTES);
+        if(magic != MAGIC && magic != PREFIXED_MAGIC){
+            throw new IOException("Not a run file");
+        }
+        return trailer;
+    }
+
+    static long zigZag (long value){
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int putVarint (byte[] bytes, int offset, long value){
+        while ((value & ~0x7FL) != 0){
+            bytes[offset++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte)value;
+        return offset;
+    }
+
+    private static void putVarint (ByteBuffer buf, long value){
+        while ((value & ~0x7FL) != 0){
+            buf.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte)value);
+    }
+
+    @Override
+    public void close () throws IOException {
+        try {
+            if(size > 0){
+                writeBlock();
+            }
+            ensure(TRAILER);
+            buffer.putLong(count);
+            buffer.putInt(maxLength);
+            buffer.putInt(prefixes == null ? MAGIC : PREFIXED_MAGIC);
+            flush();
+            RunIO.await(pending);
+        } finally {
+            channel.close();
+        }
+    }
+}
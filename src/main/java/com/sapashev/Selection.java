@@ -0,0 +1,156 @@
+package com.sapashev;
+
+import java.util.function.IntToLongFunction;
+
+/**
+ * Describes which lines go to the result file instead of all of them. Could be given as:
+ * 1) "shortest:N" - N shortest lines;
+ * 2) "longest:N" - N longest lines;
+ * 3) "length:A-B" - lines of length from A to B bytes inclusive.
+ * Selected lines are written sorted by length as usual, lines of equal length keep order of their positions.
+ * First two kinds are selected by one scan with bounded heaps (see {@link TopSelector}),
+ * the last one filters lines while runs are generated, so only selected lines are sorted.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class Selection {
+    private final Kind kind;
+    private final long min;
+    private final long max;
+    private final int limit;
+
+    public enum Kind {
+        SHORTEST,
+        LONGEST,
+        LENGTH
+    }
+
+    private Selection(Kind kind, long min, long max, int limit){
+        this.kind = kind;
+        this.min = min;
+        this.max = max;
+        this.limit = limit;
+    }
+
+    /**
+     * Parses selection from the command-line argument.
+     * @param value - argument value.
+     * @return - selection.
+     */
+    public static Selection parse (String value){
+        int colon = value.indexOf(':');
+        if(colon < 0){
+            throw new IllegalArgumentException(String.format("Wrong selection %s", value));
+        }
+        Kind kind = Kind.valueOf(value.substring(0, colon).trim().toUpperCase());
+        String bounds = value.substring(colon + 1).trim();
+        if(kind == Kind.LENGTH){
+            int dash = bounds.indexOf('-');
+            if(dash < 0){
+                throw new IllegalArgumentException(String.format("Wrong selection %s", value));
+            }
+            return new Selection(kind, Long.parseLong(bounds.substring(0, dash).trim()),
+                    Long.parseLong(bounds.substring(dash + 1).trim()), 0);
+        }
+        return new Selection(kind, 0, Long.MAX_VALUE, Integer.parseInt(bounds));
+    }
+
+    public Kind kind (){
+        return kind;
+    }
+
+    /**
+     * @return - true if the number of shortest or longest lines is selected.
+     */
+    public boolean isTop (){
+        return kind != Kind.LENGTH;
+    }
+
+    /**
+     * @return - number of shortest or longest lines.
+     */
+    public int limit (){
+        return limit;
+    }
+
+    /**
+     * @param length - length of line.
+     * @return - true if line passes the length range.
+     */
+    public boolean accepts (long length){
+        return length >= min && length <= max;
+    }
+
+    /**
+     * Removes packed values which do not pass the length range, order of the rest is kept.
+     * @param metas - array of packed values.
+     * @param offset - index of the first value to filter.
+     * @param size - number of values to filter.
+     * @param p - packer object which unpacks line length from packed long value.
+     * @return - number of values left, they occupy indexes from offset.
+     */
+    public long filter (LongArray metas, long offset, long size, Packer p){
+        long kept = offset;
+        for(long i = offset; i < offset + size; i++){
+            long value = metas.get(i);
+            if(accepts(p.getLength(value))){
+                metas.set(kept++, value);
+            }
+        }
+        return kept - offset;
+    }
+
+    /**
+     * Selects wide records the same way as packed lines. Wide lines are longer than all packed ones,
+     * so "shortest" takes them only when there are not enough packed lines.
+     * @param wide - lines which could not be packed.
+     * @param packed - number of selected packed lines.
+     * @return - selected wide records.
+     */
+    public WideRecords select (WideRecords wide, long packed){
+        long[][] records = wide.sorted();
+        int[] taken = {0, records.length, records.length};
+        if(kind == Kind.SHORTEST){
+            taken[1] = (int)Math.max(0, Math.min(records.length, limit - packed));
+        } else if(kind == Kind.LONGEST){
+            taken = longest(records.length, limit, i -> records[i][1]);
+        }
+        WideRecords result = new WideRecords();
+        for(int i = 0; i < records.length; i++){
+            if((i >= taken[0] && i < taken[1] || i >= taken[2]) && accepts(records[i][1])){
+                result.add(records[i][0], records[i][1]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the longest lines among lines sorted by length and then by position. Lines longer than the shortest
+     * of selected ones are taken from the end, but lines of that length are taken from the start of their group,
+     * so among lines of equal length the first ones are kept, as for "shortest".
+     * @param size - number of lines.
+     * @param count - number of lines to be taken.
+     * @param length - length of line by its index.
+     * @return - {from, to, tail}: lines from "from" to "to" exclusive and lines from "tail" to the end are taken.
+     */
+    static int[] longest (int size, long count, IntToLongFunction length){
+        if(count >= size){
+            return new int[]{0, size, size};
+        }
+        if(count <= 0){
+            return new int[]{size, size, size};
+        }
+        int cut = (int)(size - count);
+        long shortest = length.applyAsLong(cut);
+        int from = cut;
+        while (from > 0 && length.applyAsLong(from - 1) == shortest){
+            from--;
+        }
+        int tail = cut;
+        while (tail < size && length.applyAsLong(tail) == shortest){
+            tail++;
+        }
+        return new int[]{from, from + tail - cut, tail};
+    }
+}
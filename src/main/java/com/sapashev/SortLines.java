@@ -2,11 +2,9 @@ package com.sapashev;
 
 import java.io.*;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
 
 /**
  * Sorts file by lines length.
@@ -15,194 +13,117 @@ import java.util.concurrent.*;
  * @version 1.0
  */
 public class SortLines {
+    private static final String STREAM = "-";                      //name of standard input or output.
+    private List<Stage> stages = new ArrayList<>();
+    private SortListener listener = SortListener.NONE;
+    private SortResult result;
 
     public static void main (String[] args) throws Exception {
         long start = System.currentTimeMillis();
-        new SortLines().start(args);
-        System.out.println(System.currentTimeMillis() - start);
+        SortLines sortLines = new SortLines();
+        sortLines.start(args);
+        PrintStream report = STREAM.equals(args[1]) ? System.err : System.out;     //standard output may hold result.
+        report.println(System.currentTimeMillis() - start);
+        sortLines.stages.forEach(report::println);
     }
 
     /**
-     * Invokes methods:
-     * 1) to read from source file (readFromFileTo())
-     * 2) to create packed long value to store pair position:line length (readFromFileTo())
-     * 3) to sort internal buffer with pairs of position:line length (quickSort())
-     * 4) to save sorted pairs to the temporary file (saveToTempFile())
-     * 5) to sort and combine all temp files to the final one (reduce())
-     * 6) to copy lines from source file to destination file (copyFromSourceToDestination())
+     * Sorts file given by command-line arguments with {@link ExternalLineSorter}, which chooses how to sort:
+     * in memory, by merging of sorted runs, by counting sort or in streaming mode.
+     * Statistics of sort are available by result() afterwards.
      * @param args :
-     * 1) name of source file
-     * 2) name of destination file
+     * 1) name of source file, or "-" to read standard input in streaming mode
+     * 2) name of destination file, or "-" to write standard output in streaming mode
      * 3) charset of source file
-     * 4) buffer size - size of internal buffer to temporary store of pairs (measured in county of long)
-     * 5) number of less significant bits of long value to store length of line (measured in chars)
-     * 6) number of more significant bits to store position of line start (measured in bytes)     *
+     * 4) memory budget for pairs - absolute ("512m", "2g"), percentage of maximal heap ("25%")
+     *    or legacy size of internal buffer (measured in county of long), shared between all threads (see {@link MemoryBudget})
+     * 5) number of less significant bits of long value to store length of line (measured in bytes), or "auto"
+     * 6) number of more significant bits to store position of line start (measured in bytes), or "auto";
+     *    lines longer than length field allows are appended after all other lines (see {@link WideRecords})
+     * 7) optional sort engine - "merge" (default) or "counting" (see {@link Engine})
+     * 8) optional spill directories separated by comma, each may have capacity limit - "/mnt/a@100g,/mnt/b"
+     * 9) optional placement of temp files to spill directories - "round-robin" (default) or "free-space"
+     * 10) optional selection of lines - "shortest:N", "longest:N" or "length:A-B" (see {@link Selection}),
+     *     or "all" to sort all lines
+     * 11) optional metrics listener - "none" (default), "jfr" to emit JFR events (see {@link JfrListener})
+     *     or name of class implementing {@link SortListener} with public constructor without arguments
+     * 12) optional order of lines - "length" (default), "length,lex", "lex", "field:D:N" or "length,field:D:N"
+     *     (see {@link KeyOrder})
+     * 13) optional "distinct" to keep only the first of equal lines, or "all" (default) to keep all of them;
+     *     in "distinct" mode with order "length" lines of equal length go in order of their fingerprints, not positions
      * @throws Exception
      */
     public void start(String[] args) throws Exception{
-        FileInputStream fis = new FileInputStream(args[0]);
-        InputStreamReader isr = new InputStreamReader(fis, args[2]);
-        boolean isEOF = false;
-        int charSize = Charset.forName(args[2]).encode("s").limit();
-        int bufferSize = Integer.parseInt(args[3]);
-        long[] metas;
-        Reader reader = new Reader();
-        Sorter sorter = new Sorter();
-        Packer packer = new Packer(Integer.parseInt(args[4]), Integer.parseInt(args[5]));
-        Combiner combiner = new Combiner();
-        List<File> temps = new ArrayList<>();
-        Counter counter = new Counter();
-        Position position = new Position();
-        Copier copier = new Copier();
-
-        try(BufferedReader br = new BufferedReader(isr)){
-            while (!isEOF){
-                List<Line> lines = new ArrayList<>(bufferSize);
-                isEOF = reader.readFromFileTo(lines, charSize, bufferSize, br, counter, position);
-                metas = sorter.sort(lines, packer);
-                temps.add(combiner.saveToTempFile(metas));
-            }
+        ExternalLineSorter.Builder builder = ExternalLineSorter.builder()
+                .charset(Charset.forName(args[2]))
+                .memory(args[3])
+                .threads(Runtime.getRuntime().availableProcessors())
+                .engine(args.length > 6 ? Engine.valueOf(args[6].toUpperCase()) : Engine.MERGE)
+                .spills(args.length > 7
+                        ? SpillManager.parse(args[7], args.length > 8 ? args[8] : "round-robin")
+                        : SpillManager.defaultManager())
+                .selection(args.length > 9 && !"all".equalsIgnoreCase(args[9]) ? Selection.parse(args[9]) : null)
+                .listener(args.length > 10 ? listener(args[10]) : listener)
+                .order(args.length > 11 ? KeyOrder.parse(args[11]) : KeyOrder.LENGTH)
+                .distinct(args.length > 12 && "distinct".equalsIgnoreCase(args[12]));
+        if(STREAM.equals(args[0])){
+            builder.source(new FileInputStream(FileDescriptor.in).getChannel());
+        } else {
+            builder.source(Paths.get(args[0]));
         }
-        temps.forEach(File::deleteOnExit);
-        File result = createResultFile(temps, packer);
-        if(Files.size(Paths.get(args[0])) < Integer.MAX_VALUE){
-            copier.directCopy(args, result, packer);
+        if(STREAM.equals(args[1])){
+            builder.destination(new FileOutputStream(FileDescriptor.out).getChannel());
         } else {
-            copier.multiBufferDirectCopy(args, result, packer);
+            builder.destination(Paths.get(args[1]));
         }
-        result.deleteOnExit();
-    }
-
-
-    /**
-     * Reduces (combines) temp files to final one. Which contains all pairs (position:line length) in sorted manner.
-     * After each iteration of merging content of files, file from "temps" list is about to be deleted.
-     * @param temps - list of temp files to combine.
-     * @param p - packer object which packs and unpacks pairs (position:line length)from packed long value.
-     * @return - final combined file, which contains sorted long values from all other temp files.
-     * @throws IOException
-     */
-    private File reduce(List<File> temps, Packer p) throws IOException {
-        File f = File.createTempFile("ars_reduce_", null);
-        f.deleteOnExit();
-        while(temps.size() >= 1){
-            f = new Combiner().mergeToOne(f, temps.get(0), p);
-            temps.remove(0);
+        if(!"auto".equalsIgnoreCase(args[4]) && !"auto".equalsIgnoreCase(args[5])){
+            builder.packer(new Packer(Integer.parseInt(args[4]), Integer.parseInt(args[5])));
         }
-        return f;
+        result = builder.build().sort();
+        stages = result.stages();
     }
 
     /**
-     * Inner class describes counter - number of characters read from source file on each iteration.
+     * Creates listener given by command line.
+     * @param name - "none", "jfr" or name of class implementing SortListener.
+     * @return - listener.
+     * @throws ReflectiveOperationException
      */
-    public class Counter{
-        int counter;
-    }
-
-    /**
-     * Inner class describes position of line which has been read from source file.
-     */
-    public class Position {
-        long position;
-    }
-
-    /**
-     * Temps list will be divided to the some sublists according to the concurrency level.
-     * After that, each thread applies merge sort to the each sublist concurrently.
-     * Resulting sublists will be megre sorted to the final file.
-     * @param temps - list of temp files to combine.
-     * @param p - packer object which packs and unpacks pairs (position:line length)from packed long value.
-     * @return - final combined file, which contains sorted long values from all other temp files.
-     * @throws IOException
-     */
-    private File createResultFile (List<File> temps, Packer p) throws IOException, InterruptedException, ExecutionException {
-        File f;
-        if(temps.size() >= 4){
-            int concurrencyLevel = Runtime.getRuntime().availableProcessors() * 3;
-            ExecutorService service = Executors.newFixedThreadPool(concurrencyLevel);
-            List<List<File>> files = splitList(temps, concurrencyLevel);
-            List<Future<File>> total = runParallelReducing(p, service, files);
-            List<File> results = resultParallelReducing(total);
-            f = reduce(results, p);
-            service.shutdownNow();
-        } else {
-            f = reduce(temps, p);
+    private static SortListener listener (String name) throws ReflectiveOperationException {
+        if("none".equalsIgnoreCase(name)){
+            return SortListener.NONE;
         }
-        temps.forEach(File::deleteOnExit);
-        return f;
+        if("jfr".equalsIgnoreCase(name)){
+            return new JfrListener();
+        }
+        return Class.forName(name).asSubclass(SortListener.class).getConstructor().newInstance();
     }
 
     /**
-     * Creates list of resulting files retrieved from each thread.
-     * This resulting list will be reduced on a final phase.
-     * @param total - futures returned by ExecutorService for each thread result.
-     * @return list of resulting files.
-     * @throws InterruptedException
-     * @throws ExecutionException
+     * @param listener - listener of phases and metrics of sorting, SortListener.NONE by default.
      */
-    private List<File> resultParallelReducing (List<Future<File>> total) throws InterruptedException, ExecutionException {
-        List<File> results = new ArrayList<>();
-        for(Future<File> fut : total){
-            results.add(fut.get());
-        }
-        return results;
+    public void setListener (SortListener listener){
+        this.listener = listener;
     }
 
     /**
-     * Runs concurrent processing (merge sort and file reducing) of each sublist.
-     * @param p - packer to pack/unpack long values.
-     * @param service - executor service to run all threads.
-     * @return - list of future objects which will return result of concurrent processing of temp files.
+     * @return - statistics of the last sort, or null if nothing has been sorted.
      */
-    private List<Future<File>> runParallelReducing (Packer p, ExecutorService service, List<List<File>> files) {
-        List<Future<File>> listOfList = new ArrayList<>();
-        for (List<File> l : files){
-            listOfList.add(service.submit(new Reducer(l, p)));
-        }
-        return listOfList;
+    public SortResult result (){
+        return result;
     }
 
     /**
-     * Splits raw list to the sublists according to concurrency level.
-     * @param temps - raw list (list of temp files to merge).
-     * @param concurrencyLevel - how much threads will be process sublists concurrently.
-     * @return list of lists of temp files.
+     * Inner class describes counter - number of characters read from source file on each iteration.
      */
-    private List<List<File>> splitList (List<File> temps, int concurrencyLevel) {
-        int num = temps.size() / concurrencyLevel;
-        List<List<File>> files = new ArrayList<>(concurrencyLevel);
-        for(int i = 0; i < concurrencyLevel; i++){
-            List<File> list = new ArrayList<>(num);
-            int y = 0;
-            while (y < num && !temps.isEmpty()){
-                list.add(temps.remove(0));
-                y++;
-            }
-            files.add(list);
-        }
-        if(!temps.isEmpty()){
-            while (!temps.isEmpty()){
-                files.get(files.size() - 1).add(temps.remove(0));
-            }
-        }
-        return files;
+    public class Counter{
+        int counter;
     }
 
     /**
-     * Implements Callable to sort'n'merge temporary files.
+     * Inner class describes position of line which has been read from source file.
      */
-    private class Reducer implements Callable<File> {
-        private final List<File> list;
-        private final Packer p;
-
-        public Reducer(List<File> list, Packer p){
-            this.list = list;
-            this.p = p;
-        }
-
-        @Override
-        public File call () throws Exception {
-            return reduce(list, p);
-        }
+    public class Position {
+        long position;
     }
 }
@@ -0,0 +1,92 @@
+package com.sapashev;
+
+/**
+ * Receives progress and metrics of sorting: phases with their wall and CPU time, bytes and lines scanned,
+ * runs produced, merges and copied bytes. All methods do nothing by default, so listener overrides only those
+ * it needs, and NONE is used when no listener is registered.
+ * Methods are called once per batch, run, merge or copied partition, never per line, and may be called
+ * concurrently by several threads of one phase, so implementation should be thread-safe.
+ * Emitting of JFR events is provided by {@link JfrListener}.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public interface SortListener {
+    SortListener NONE = new SortListener(){};
+
+    /**
+     * SCAN - source is read and packed values of lines are sorted to runs (or counted, or selected);
+     * MERGE - runs are merged to the one reference;
+     * COPY - lines are copied to the result in order of reference.
+     */
+    enum Phase {
+        SCAN,
+        MERGE,
+        COPY
+    }
+
+    default void phaseStarted (Phase phase){
+    }
+
+    /**
+     * @param phase - finished phase.
+     * @param wallNanos - wall time of phase.
+     * @param cpuNanos - CPU time spent by all threads of process during phase, or -1 if JVM does not report it.
+     */
+    default void phaseFinished (Phase phase, long wallNanos, long cpuNanos){
+    }
+
+    /**
+     * @param bytes - number of source bytes scanned.
+     * @param lines - number of lines found in them.
+     */
+    default void scanned (long bytes, long lines){
+    }
+
+    /**
+     * @param lines - number of packed values sorted in memory.
+     * @param nanos - time of sort.
+     */
+    default void sorted (long lines, long nanos){
+    }
+
+    /**
+     * @param lines - number of lines of the run saved to the temp file.
+     * @param bytes - size of run file.
+     */
+    default void runProduced (long lines, long bytes){
+    }
+
+    /**
+     * @param runs - number of runs joined as one natural run without merging.
+     * @param bytes - size of joined run file.
+     */
+    default void joined (int runs, long bytes){
+    }
+
+    /**
+     * @param pass - number of merge pass, runs produced by scan are merged on the first one.
+     * @param runs - number of runs merged at once.
+     * @param bytes - size of merged file.
+     * @param nanos - time of merge.
+     */
+    default void merged (int pass, int runs, long bytes, long nanos){
+    }
+
+    /**
+     * @param bytes - number of bytes written to the result.
+     * @param lines - number of lines written.
+     * @param nanos - time of copying.
+     */
+    default void copied (long bytes, long lines, long nanos){
+    }
+
+    /**
+     * Window of gather copy is copied in order of reference instead of source positions,
+     * because its line is longer than window or its positions and line indexes do not fit one sort key.
+     * @param bytes - size of window.
+     * @param lines - number of lines of window.
+     */
+    default void gatherRefused (long bytes, long lines){
+    }
+}
@@ -0,0 +1,211 @@
+package com.sapashev;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of one sort made by {@link ExternalLineSorter}: how it was sorted, how many lines and bytes
+ * were written, how many runs and merge passes were needed and how long each phase took.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class SortResult {
+    private final Mode mode;
+    private final long lines;
+    private final long bytes;
+    private final long scannedBytes;
+    private final long runs;
+    private final int mergePasses;
+    private final long elapsedNanos;
+    private final Map<SortListener.Phase, Long> wallNanos;
+    private final Map<SortListener.Phase, Long> cpuNanos;
+    private final List<Stage> stages;
+
+    /**
+     * IN_MEMORY - packed values of all lines are sorted in memory;
+     * MERGE - runs are saved to temp files and merged;
+     * COUNTING - lines are scattered by counting sort (see {@link CountingSorter});
+     * SELECT - shortest or longest lines are selected (see {@link TopSelector});
+     * KEYED - lines are ordered with secondary key or duplicates are dropped (see {@link KeyedSorter});
+     * STREAM - lines are sorted from stream of unknown size (see {@link StreamSorter}).
+     */
+    public enum Mode {
+        IN_MEMORY,
+        MERGE,
+        COUNTING,
+        SELECT,
+        KEYED,
+        STREAM
+    }
+
+    private SortResult(Mode mode, Collector c, long elapsedNanos, List<Stage> stages){
+        this.mode = mode;
+        this.lines = c.lines.get();
+        this.bytes = c.bytes.get();
+        this.scannedBytes = c.scanned.get();
+        this.runs = c.runs.get();
+        this.mergePasses = c.passes.get();
+        this.elapsedNanos = elapsedNanos;
+        this.wallNanos = Collections.unmodifiableMap(new EnumMap<>(c.wall));
+        this.cpuNanos = Collections.unmodifiableMap(new EnumMap<>(c.cpu));
+        this.stages = Collections.unmodifiableList(new ArrayList<>(stages));
+    }
+
+    public Mode mode (){
+        return mode;
+    }
+
+    /**
+     * @return - number of lines written to the result.
+     */
+    public long lines (){
+        return lines;
+    }
+
+    /**
+     * @return - number of bytes written to the result.
+     */
+    public long bytes (){
+        return bytes;
+    }
+
+    /**
+     * @return - number of source bytes scanned, source scanned twice (e.g. by counting sort) is counted twice.
+     */
+    public long scannedBytes (){
+        return scannedBytes;
+    }
+
+    /**
+     * @return - number of sorted runs saved to temp files.
+     */
+    public long runs (){
+        return runs;
+    }
+
+    /**
+     * @return - number of merge passes, 0 if runs were not merged.
+     */
+    public int mergePasses (){
+        return mergePasses;
+    }
+
+    public long elapsedNanos (){
+        return elapsedNanos;
+    }
+
+    /**
+     * @return - wall time of each phase made, phases made several times are summed up.
+     */
+    public Map<SortListener.Phase, Long> wallNanos (){
+        return wallNanos;
+    }
+
+    /**
+     * @return - process CPU time of each phase made, empty if JVM does not report CPU time.
+     */
+    public Map<SortListener.Phase, Long> cpuNanos (){
+        return cpuNanos;
+    }
+
+    /**
+     * @return - busy and idle time of pipeline stages of run generation, empty if runs were not generated.
+     */
+    public List<Stage> stages (){
+        return stages;
+    }
+
+    @Override
+    public String toString (){
+        return String.format("%s: %d lines, %d bytes, %d runs, %d merge passes, %d ms", mode, lines, bytes, runs,
+                mergePasses, elapsedNanos / 1000000);
+    }
+
+    /**
+     * Listener which collects statistics of sort and passes all events to the listener of user.
+     */
+    static class Collector implements SortListener {
+        private final SortListener delegate;
+        private final long start = System.nanoTime();
+        private final AtomicLong lines = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicInteger passes = new AtomicInteger();
+        private final Map<Phase, Long> wall = new EnumMap<>(Phase.class);
+        private final Map<Phase, Long> cpu = new EnumMap<>(Phase.class);
+        private List<Stage> stages = Collections.emptyList();
+
+        Collector(SortListener delegate){
+            this.delegate = delegate;
+        }
+
+        void stages (List<Stage> stages){
+            this.stages = stages;
+        }
+
+        /**
+         * @param mode - how lines were sorted.
+         * @return - statistics collected since collector was created.
+         */
+        SortResult result (Mode mode){
+            return new SortResult(mode, this, System.nanoTime() - start, stages);
+        }
+
+        @Override
+        public void phaseStarted (Phase phase){
+            delegate.phaseStarted(phase);
+        }
+
+        @Override
+        public synchronized void phaseFinished (Phase phase, long wallNanos, long cpuNanos){
+            wall.merge(phase, wallNanos, Long::sum);
+            if(cpuNanos >= 0){
+                cpu.merge(phase, cpuNanos, Long::sum);
+            }
+            delegate.phaseFinished(phase, wallNanos, cpuNanos);
+        }
+
+        @Override
+        public void scanned (long bytes, long lines){
+            scanned.addAndGet(bytes);
+            delegate.scanned(bytes, lines);
+        }
+
+        @Override
+        public void sorted (long lines, long nanos){
+            delegate.sorted(lines, nanos);
+        }
+
+        @Override
+        public void runProduced (long lines, long bytes){
+            runs.incrementAndGet();
+            delegate.runProduced(lines, bytes);
+        }
+
+        @Override
+        public void joined (int runs, long bytes){
+            delegate.joined(runs, bytes);
+        }
+
+        @Override
+        public void merged (int pass, int runs, long bytes, long nanos){
+            passes.accumulateAndGet(pass, Math::max);
+            delegate.merged(pass, runs, bytes, nanos);
+        }
+
+        @Override
+        public void copied (long bytes, long lines, long nanos){
+            this.bytes.addAndGet(bytes);
+            this.lines.addAndGet(lines);
+            delegate.copied(bytes, lines, nanos);
+        }
+
+        @Override
+        public void gatherRefused (long bytes, long lines){
+            delegate.gatherRefused(bytes, lines);
+        }
+    }
+}
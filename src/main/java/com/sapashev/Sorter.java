@@ -1,16 +1,44 @@
 package com.sapashev;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
- * Sorts array by quick sort algorithm.
+ * Sorts packed pairs (position:line length) by line length.
  * @author Arslan Sapashev
  * @since 28.12.2016
  * @version 1.0
  */
-public class Sorter {
+public class Sorter implements AutoCloseable {
+    private static final int RADIX = 11;                        //bits of length distributed on each pass.
+    private static final int BUCKETS = 1 << RADIX;
+    private static final int MASK = BUCKETS - 1;
+    private static final int PARALLEL_THRESHOLD = 1 << 16;      //smaller arrays are sorted by single thread.
+    private final boolean parallel;
+    private LongArray scratch;
+    private long[][] counts;
+    private SortListener listener = SortListener.NONE;
+
+    public Sorter(){
+        this(false);
+    }
+
+    /**
+     * @param parallel - if true, each pass of radix sort of large array is divided between all available processors.
+     */
+    public Sorter(boolean parallel){
+        this.parallel = parallel;
+    }
+
+    /**
+     * @param listener - listener which is told the size and time of each sort.
+     */
+    public void setListener (SortListener listener){
+        this.listener = listener;
+    }
 
     public long[] sort (List<Line> lines, Packer packer){
         List<Line> result = lines.parallelStream().sorted(Comparator.comparing(Line::length)).collect(Collectors.toList());
@@ -20,4 +48,167 @@ public class Sorter {
         }
         return metas;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sorts first "size" packed values of metas array in place by line length.
+     * Uses stable LSD radix sort over length bits, so lines of equal length keep order of their positions.
+     * @param metas - array of packed pairs (position:line length).
+     * @param size - number of values to sort.
+     * @param packer - packer object which packs and unpacks pairs (position:line length).
+     */
+    public void sort (long[] metas, int size, Packer packer){
+        sort(LongArray.wrap(metas), size, packer);
+    }
+
+    /**
+     * Sorts first "size" packed values of off-heap array in place by line length, the same way as java array.
+     * @param metas - array of packed pairs (position:line length).
+     * @param size - number of values to sort.
+     * @param packer - packer object which packs and unpacks pairs (position:line length).
+     */
+    public void sort (LongArray metas, long size, Packer packer){
+        long start = System.nanoTime();
+        radixSort(metas, size, packer);
+        listener.sorted(size, System.nanoTime() - start);
+    }
+
+    /**
+     * LSD radix sort of packed values by the length stored in "minor" less significant bits.
+     * Each pass distributes values by the next RADIX bits of length, passes over bits above the longest line
+     * and passes where all values fall to the one bucket are skipped.
+     * Natural order is detected by the same loop which finds the longest line: values already ascending by length
+     * are left as they are, values descending by length are reversed (see reverse()), no pass is made at all.
+     * Off-heap scratch array and counters are kept between invocations, so repeated sorting produces no garbage.
+     * @param metas - array of packed pairs (position:line length).
+     * @param size - number of values to sort.
+     * @param packer - packer object which packs and unpacks pairs (position:line length).
+     */
+    public void radixSort (LongArray metas, long size, Packer packer){
+        if(size < 2){
+            return;
+        }
+        long lengthMask = (1L << packer.minor()) - 1;
+        long max = 0;
+        long previous = metas.get(0) & lengthMask;
+        boolean ascending = true;
+        boolean descending = true;
+        for(long i = 0; i < size; i++){
+            long length = metas.get(i) & lengthMask;
+            max |= length;
+            ascending &= length >= previous;
+            descending &= length <= previous;
+            previous = length;
+        }
+        if(ascending){
+            return;
+        }
+        if(descending){
+            reverse(metas, size, lengthMask);
+            return;
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(max);
+        if(scratch == null || scratch.size() < size){
+            close();
+            scratch = new LongArray(size);
+        }
+        int chunks = parallel && size >= PARALLEL_THRESHOLD ? Runtime.getRuntime().availableProcessors() : 1;
+        if(counts == null || counts.length != chunks){
+            counts = new long[chunks][BUCKETS];
+        }
+        LongArray from = metas;
+        LongArray to = scratch;
+        for(int shift = 0; shift < bits; shift += RADIX){
+            if(pass(from, to, size, shift, lengthMask, chunks)){
+                LongArray t = from;
+                from = to;
+                to = t;
+            }
+        }
+        if(from != metas){
+            LongArray.copy(from, 0, metas, 0, size);
+        }
+    }
+
+    /**
+     * Distributes values by RADIX bits of length starting from "shift" bit, bits of position are masked by lengthMask.
+     * Array is divided to the "chunks" consecutive parts, which are counted and scattered concurrently.
+     * @return - false if all values fall to the one bucket and pass was skipped.
+     */
+    private boolean pass (LongArray from, LongArray to, long size, int shift, long lengthMask, int chunks){
+        long step = (size + chunks - 1) / chunks;
+        if(chunks == 1){
+            count(from, 0, size, shift, lengthMask, counts[0]);
+        } else {
+            IntStream.range(0, chunks).parallel().forEach(c ->
+                    count(from, Math.min(c * step, size), Math.min((c + 1) * step, size), shift, lengthMask, counts[c]));
+        }
+        long offset = 0;
+        for(int b = 0; b < BUCKETS; b++){
+            long total = 0;
+            for(int c = 0; c < chunks; c++){
+                long n = counts[c][b];
+                counts[c][b] = offset + total;
+                total += n;
+            }
+            if(total == size){
+                return false;
+            }
+            offset += total;
+        }
+        if(chunks == 1){
+            scatter(from, to, 0, size, shift, lengthMask, counts[0]);
+        } else {
+            IntStream.range(0, chunks).parallel().forEach(c ->
+                    scatter(from, to, Math.min(c * step, size), Math.min((c + 1) * step, size), shift, lengthMask, counts[c]));
+        }
+        return true;
+    }
+
+    /**
+     * Reverses values descending by length, then reverses back each group of equal length,
+     * so lines of equal length keep order of their positions.
+     */
+    private static void reverse (LongArray metas, long size, long lengthMask){
+        reverseRange(metas, 0, size - 1);
+        long start = 0;
+        for(long i = 1; i <= size; i++){
+            if(i == size || (metas.get(i) & lengthMask) != (metas.get(start) & lengthMask)){
+                reverseRange(metas, start, i - 1);
+                start = i;
+            }
+        }
+    }
+
+    private static void reverseRange (LongArray metas, long from, long to){
+        for(; from < to; from++, to--){
+            long t = metas.get(from);
+            metas.set(from, metas.get(to));
+            metas.set(to, t);
+        }
+    }
+
+    private static void count (LongArray from, long start, long end, int shift, long lengthMask, long[] count){
+        Arrays.fill(count, 0);
+        for(long i = start; i < end; i++){
+            count[(int)((from.get(i) & lengthMask) >>> shift) & MASK]++;
+        }
+    }
+
+    private static void scatter (LongArray from, LongArray to, long start, long end, int shift, long lengthMask, long[] offsets){
+        for(long i = start; i < end; i++){
+            long value = from.get(i);
+            to.set(offsets[(int)((value & lengthMask) >>> shift) & MASK]++, value);
+        }
+    }
+
+    /**
+     * Frees off-heap scratch array, sorter may be used again after that.
+     */
+    @Override
+    public void close (){
+        if(scratch != null){
+            scratch.close();
+            scratch = null;
+        }
+    }
+}
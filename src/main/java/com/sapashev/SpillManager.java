@@ -0,0 +1,258 @@
+package com.sapashev;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Places temp files (runs and results of merges) to the several spill directories, which usually lie on different disks.
+ * Each directory may have capacity limit - maximal total size of temp files in it.
+ * Directory for the next file is chosen in round-robin manner or by the largest usable space of its disk.
+ * Output of merge is placed to the disk which holds none of merge inputs, if there is such one,
+ * so reading and writing of merge go to different devices.
+ * Temp files are deleted explicitly by delete(), manager deletes files left by failed sort when closed.
+ * Each sort works with its own session (see session()), which shares directories and their capacity with manager,
+ * so closing of session deletes only temp files of its sort.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class SpillManager implements AutoCloseable {
+    private static final long UNLIMITED = Long.MAX_VALUE;
+    private final SpillManager root;                    //manager whose directories are shared, this one for manager itself.
+    private final List<SpillDir> dirs;
+    private final Placement placement;
+    private final Map<File, Reservation> reservations = new HashMap<>();
+    private int next;                                   //round-robin cursor, used by root only.
+
+    /**
+     * How directory for the next temp file is chosen.
+     */
+    public enum Placement {
+        ROUND_ROBIN,
+        FREE_SPACE
+    }
+
+    /**
+     * @param dirs - spill directories, each optionally followed by "@capacity" ("/mnt/a@100g").
+     * @param placement - rule of choosing directory.
+     * @throws IOException
+     */
+    public SpillManager(List<String> dirs, Placement placement) throws IOException {
+        if(dirs.isEmpty()){
+            throw new IllegalArgumentException("There should be at least one spill directory");
+        }
+        this.dirs = new ArrayList<>(dirs.size());
+        for(String d : dirs){
+            int at = d.lastIndexOf('@');
+            Path path = Paths.get(at < 0 ? d : d.substring(0, at)).toAbsolutePath();
+            long capacity = at < 0 ? UNLIMITED : parseSize(d.substring(at + 1));
+            Files.createDirectories(path);
+            this.dirs.add(new SpillDir(path, Files.getFileStore(path), capacity));
+        }
+        this.placement = placement;
+        this.root = this;
+    }
+
+    private SpillManager(SpillManager root){
+        this.root = root;
+        this.dirs = root.dirs;
+        this.placement = root.placement;
+    }
+
+    /**
+     * @return - session which places temp files to the same directories and shares their capacity with this manager,
+     * but keeps its own temp files, so they are deleted by closing of session.
+     */
+    public SpillManager session (){
+        return new SpillManager(root);
+    }
+
+    /**
+     * @return - manager which places all temp files to the default temp directory.
+     */
+    public static SpillManager defaultManager (){
+        try {
+            return new SpillManager(Collections.singletonList(System.getProperty("java.io.tmpdir")), Placement.ROUND_ROBIN);
+        } catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses spill directories from the command-line argument, directories are separated by comma.
+     * @param value - argument value, e.g. "/mnt/a@100g,/mnt/b".
+     * @param placement - "round-robin" or "free-space".
+     * @return - spill manager.
+     * @throws IOException
+     */
+    public static SpillManager parse (String value, String placement) throws IOException {
+        return new SpillManager(Arrays.asList(value.split(",")),
+                Placement.valueOf(placement.trim().toUpperCase().replace('-', '_')));
+    }
+
+    /**
+     * Creates temp file.
+     * @param prefix - prefix of file name.
+     * @param expectedSize - expected size of file, reserved from the capacity of directory.
+     * @return - new empty temp file.
+     * @throws IOException
+     */
+    public File create (String prefix, long expectedSize) throws IOException {
+        return create(prefix, expectedSize, Collections.<File>emptyList());
+    }
+
+    /**
+     * Creates temp file on the disk which holds none of the given files, if possible.
+     * @param prefix - prefix of file name.
+     * @param expectedSize - expected size of file, reserved from the capacity of directory.
+     * @param avoid - files which will be read while new file is written (inputs of merge).
+     * @return - new empty temp file.
+     * @throws IOException
+     */
+    public File create (String prefix, long expectedSize, Collection<File> avoid) throws IOException {
+        synchronized (root){
+            Set<FileStore> busy = new HashSet<>();
+            for(File f : avoid){
+                Reservation r = reservations.get(f);
+                if(r != null){
+                    busy.add(r.dir.store);
+                }
+            }
+            SpillDir dir = root.choose(expectedSize, busy);
+            if(dir == null){
+                dir = root.choose(expectedSize, Collections.<FileStore>emptySet());
+            }
+            if(dir == null){
+                throw new IOException(String.format("There is no room for %d bytes in spill directories", expectedSize));
+            }
+            File f = File.createTempFile(prefix, null, dir.path.toFile());
+            dir.used += expectedSize;
+            reservations.put(f, new Reservation(dir, expectedSize));
+            return f;
+        }
+    }
+
+    /**
+     * Changes reservation of temp file to its new size, e.g. when other runs were appended to it.
+     * Bytes are already on disk, so reservation may exceed capacity of directory, then no file is placed there
+     * until some are deleted.
+     * @param f - temp file.
+     * @param size - new size of file.
+     */
+    public void resize (File f, long size){
+        synchronized (root){
+            Reservation r = reservations.get(f);
+            if(r != null){
+                r.dir.used += size - r.size;
+                reservations.put(f, new Reservation(r.dir, size));
+            }
+        }
+    }
+
+    /**
+     * Deletes temp file and returns its reservation to the capacity of directory.
+     * @param f - temp file.
+     */
+    public void delete (File f){
+        synchronized (root){
+            Reservation r = reservations.remove(f);
+            if(r != null){
+                r.dir.used -= r.size;
+            }
+        }
+        f.delete();
+    }
+
+    /**
+     * Deletes all temp files created by this manager (or session) and not deleted yet.
+     */
+    @Override
+    public void close (){
+        List<File> left;
+        synchronized (root){
+            left = new ArrayList<>(reservations.keySet());
+        }
+        left.forEach(this::delete);
+    }
+
+    /**
+     * @return - number of different disks among spill directories.
+     */
+    public int devices (){
+        Set<FileStore> stores = new HashSet<>();
+        for(SpillDir d : dirs){
+            stores.add(d.store);
+        }
+        return stores.size();
+    }
+
+    private SpillDir choose (long expectedSize, Set<FileStore> busy) throws IOException {
+        SpillDir chosen = null;
+        long bestSpace = -1;
+        for(int i = 0; i < dirs.size(); i++){
+            SpillDir d = dirs.get((next + i) % dirs.size());
+            if(busy.contains(d.store) || d.capacity - d.used < expectedSize){
+                continue;
+            }
+            if(placement == Placement.ROUND_ROBIN){
+                next = (next + i + 1) % dirs.size();
+                return d;
+            }
+            long space = d.store.getUsableSpace();
+            if(space > bestSpace){
+                bestSpace = space;
+                chosen = d;
+            }
+        }
+        return chosen;
+    }
+
+    private static long parseSize (String value){
+        String v = value.trim().toLowerCase();
+        char unit = v.charAt(v.length() - 1);
+        long multiplier;
+        switch (unit){
+            case 'k': multiplier = 1L << 10; break;
+            case 'm': multiplier = 1L << 20; break;
+            case 'g': multiplier = 1L << 30; break;
+            case 't': multiplier = 1L << 40; break;
+            default: return Long.parseLong(v);
+        }
+        return (long)(Double.parseDouble(v.substring(0, v.length() - 1)) * multiplier);
+    }
+
+    /**
+     * Spill directory, its disk and capacity.
+     */
+    private static class SpillDir {
+        final Path path;
+        final FileStore store;
+        final long capacity;
+        long used;
+
+        SpillDir(Path path, FileStore store, long capacity){
+            this.path = path;
+            this.store = store;
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * Room reserved for temp file in the directory.
+     */
+    private static class Reservation {
+        final SpillDir dir;
+        final long size;
+
+        Reservation(SpillDir dir, long size){
+            this.dir = dir;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.sapashev;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates time which threads of one pipeline stage spent working (busy) and waiting for
+ * input or free room in the next queue (idle).
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class Stage {
+    private final String name;
+    private final AtomicLong busy = new AtomicLong();
+    private final AtomicLong idle = new AtomicLong();
+
+    public Stage(String name){
+        this.name = name;
+    }
+
+    public String name (){
+        return name;
+    }
+
+    public void busy (long nanos){
+        busy.addAndGet(nanos);
+    }
+
+    public void idle (long nanos){
+        idle.addAndGet(nanos);
+    }
+
+    /**
+     * @return - total busy time of all threads of stage in nanoseconds.
+     */
+    public long busyNanos (){
+        return busy.get();
+    }
+
+    /**
+     * @return - total idle time of all threads of stage in nanoseconds.
+     */
+    public long idleNanos (){
+        return idle.get();
+    }
+
+    @Override
+    public String toString (){
+        return String.format("%s: busy %d ms, idle %d ms", name,
+                TimeUnit.NANOSECONDS.toMillis(busy.get()), TimeUnit.NANOSECONDS.toMillis(idle.get()));
+    }
+}
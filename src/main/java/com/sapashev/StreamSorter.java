@@ -0,0 +1,368 @@
+package com.sapashev;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sorts lines of the stream of unknown size (e.g. standard input) and writes them to the output stream.
+ * Source could not be read again by positions, so lines themselves are kept:
+ * 1) stream is read to the chunks of bytes, lines of each chunk are sorted and saved with their bytes
+ * to the raw run file (int length and bytes of each line);
+ * 2) runs are merged through the loser tree (see {@link KWayMerger}) straight to the output stream,
+ * if there are more than fanIn runs, groups of them are merged to the intermediate raw runs first.
+ * Reading of the next chunk overlaps sorting and saving of the previous one, each of two chunks takes
+ * a quarter of memory budget for bytes, the other half is shared by packed values of lines of both chunks
+ * and the scratch array of radix sort (see {@link Sorter}).
+ * If the whole stream fits one chunk, it is sorted in memory without run files.
+ * Reading of stream with saving of runs is reported to the listener as SCAN phase, merging of runs as MERGE phase.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class StreamSorter {
+    private static final int MIN_CHUNK = 64 * 1024;
+    private static final int MAX_CHUNK = Integer.MAX_VALUE - 8;
+    private static final int MIN_BUFFER = 64 * 1024;
+    private static final int MAX_BUFFER = 8 * 1024 * 1024;
+    private final MemoryBudget budget;
+    private final SpillManager spills;
+    private final byte[] separator;
+    private final int fanIn;
+    private final Sorter sorter = new Sorter(true);
+    private SortListener listener = SortListener.NONE;
+
+    /**
+     * @param budget - memory which may be spent on chunks and merge buffers.
+     * @param spills - manager which places raw runs to the spill directories.
+     * @param separator - bytes to be written after each line.
+     * @param fanIn - maximal number of runs merged at once.
+     */
+    public StreamSorter(MemoryBudget budget, SpillManager spills, byte[] separator, int fanIn){
+        this.budget = budget;
+        this.spills = spills;
+        this.separator = separator;
+        this.fanIn = Math.max(fanIn, 2);
+    }
+
+    /**
+     * @param listener - listener of phases, scanned chunks, runs and merges.
+     */
+    public void setListener (SortListener listener){
+        this.listener = listener;
+        sorter.setListener(listener);
+    }
+
+    /**
+     * Sorts lines of input to the output, streams are not closed.
+     * @param in - input stream.
+     * @param out - output stream, flushed at the end.
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public void sort (InputStream in, OutputStream out) throws IOException, InterruptedException, ExecutionException {
+        int chunkBytes = (int)Math.max(MIN_CHUNK, Math.min(budget.bytes() / 4, MAX_CHUNK));
+        int chunkLines = Math.max(MIN_CHUNK / Long.BYTES, budget.entries(Long.BYTES * 3, 2));   //two chunks and scratch.
+        Chunk current = new Chunk(chunkBytes, chunkLines);
+        Chunk spare = new Chunk(chunkBytes, chunkLines);
+        List<File> runs = new ArrayList<>();
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        Future<File> pending = null;
+        PhaseTimer scan = PhaseTimer.start(listener, SortListener.Phase.SCAN);
+        try {
+            while (current.fill(in)){
+                listener.scanned(current.start, current.lines);
+                if(pending != null){
+                    runs.add(pending.get());
+                }
+                final Chunk full = current;
+                pending = service.submit(() -> save(full));
+                current = spare;
+                spare = full;
+                current.carry(spare);
+            }
+            if(pending != null){
+                runs.add(pending.get());
+            }
+            listener.scanned(current.start, current.lines);
+        } finally {
+            service.shutdownNow();
+        }
+        BufferedOutputStream bos = new BufferedOutputStream(out, MAX_BUFFER);
+        if(runs.isEmpty()){
+            current.sort();
+            scan.stop();
+            PhaseTimer copy = PhaseTimer.start(listener, SortListener.Phase.COPY);
+            try {
+                long start = System.nanoTime();
+                long bytes = current.writeLines(bos);
+                bos.flush();
+                listener.copied(bytes, current.lines, System.nanoTime() - start);
+            } finally {
+                copy.stop();
+            }
+        } else {
+            if(current.lines > 0){
+                runs.add(save(current));
+            }
+            scan.stop();
+            current = null;                                 //chunks are not needed by merge.
+            spare = null;
+            merge(runs, bos);
+        }
+        sorter.close();
+        bos.flush();
+    }
+
+    /**
+     * Merges raw runs to the output, by several passes if there are more than fanIn runs.
+     * @throws IOException
+     */
+    private void merge (List<File> runs, OutputStream out) throws IOException {
+        PhaseTimer timer = PhaseTimer.start(listener, SortListener.Phase.MERGE);
+        try {
+            int pass = 1;
+            while (runs.size() > fanIn){
+                List<File> next = new ArrayList<>();
+                for(int i = 0; i < runs.size(); i += fanIn){
+                    List<File> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                    long size = 0;
+                    for(File f : group){
+                        size += f.length();
+                    }
+                    File merged = spills.create("arsSTREAM_", size, group);
+                    try(DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(merged), MAX_BUFFER))){
+                        merge(group, dos, true, pass);
+                    }
+                    next.add(merged);
+                }
+                runs = next;
+                pass++;
+            }
+            merge(runs, out, false, pass);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Sorts lines of chunk and saves them to the raw run.
+     * @return - raw run file.
+     * @throws IOException
+     */
+    private File save (Chunk chunk) throws IOException {
+        chunk.sort();
+        File f = spills.create("arsSTREAM_", chunk.start + (long)chunk.lines * Integer.BYTES);
+        try(DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), MAX_BUFFER))){
+            chunk.writeRun(dos);
+        }
+        listener.runProduced(chunk.lines, f.length());
+        return f;
+    }
+
+    /**
+     * Merges raw runs and deletes them.
+     * @param runs - raw runs in order of stream.
+     * @param out - target stream.
+     * @param raw - true to write raw run, false to write lines followed by separator.
+     * @param pass - merge pass reported to the listener.
+     * @throws IOException
+     */
+    private void merge (List<File> runs, OutputStream out, boolean raw, int pass) throws IOException {
+        long start = System.nanoTime();
+        long written = 0;
+        long count = 0;
+        int k = runs.size();
+        int bufferSize = (int)Math.max(MIN_BUFFER, Math.min(budget.bytes() / (k + 1), MAX_BUFFER));
+        DataInputStream[] readers = new DataInputStream[k];
+        byte[][] lines = new byte[k][];
+        long[] keys = new long[k];
+        DataOutputStream dos = raw ? (DataOutputStream)out : null;
+        try {
+            for(int i = 0; i < k; i++){
+                readers[i] = new DataInputStream(new BufferedInputStream(new FileInputStream(runs.get(i)), bufferSize));
+                lines[i] = new byte[256];
+                advance(readers[i], i, keys, lines);
+            }
+            int[] tree = new int[k];
+            tree[0] = KWayMerger.build(tree, keys, 1, k);
+            int winner = tree[0];
+            while (keys[winner] != KWayMerger.EXHAUSTED){
+                int length = (int)(keys[winner] >>> 32);
+                if(raw){
+                    dos.writeInt(length);
+                    dos.write(lines[winner], 0, length);
+                    written += Integer.BYTES + length;
+                } else {
+                    out.write(lines[winner], 0, length);
+                    out.write(separator);
+                    written += length + separator.length;
+                }
+                count++;
+                advance(readers[winner], winner, keys, lines);
+                winner = KWayMerger.replay(tree, keys, winner, k);
+            }
+        } finally {
+            for(DataInputStream r : readers){
+                if(r != null){
+                    r.close();
+                }
+            }
+        }
+        runs.forEach(spills::delete);
+        listener.merged(pass, k, written, System.nanoTime() - start);
+        if(!raw){
+            listener.copied(written, count, System.nanoTime() - start);             //the last merge writes the result.
+        }
+    }
+
+    /**
+     * Reads next line of run to the leaf of tree, key is length of line and run index as in KWayMerger.
+     */
+    private static void advance (DataInputStream reader, int leaf, long[] keys, byte[][] lines) throws IOException {
+        int length;
+        try {
+            length = reader.readInt();
+        } catch (EOFException e){
+            keys[leaf] = KWayMerger.EXHAUSTED;
+            return;
+        }
+        if(lines[leaf].length < length){
+            lines[leaf] = new byte[Math.max(length, lines[leaf].length * 2)];
+        }
+        reader.readFully(lines[leaf], 0, length);
+        keys[leaf] = ((long)length << 32) | leaf;
+    }
+
+    /**
+     * Bytes of stream read to memory and packed values (offset in chunk:line length) of complete lines in them.
+     * Bytes after the last complete line belong to the next chunk.
+     */
+    private class Chunk {
+        byte[] bytes;
+        long[] metas;
+        Packer packer;
+        int filled;                     //number of bytes read to the chunk.
+        int scanned;                    //number of bytes checked for line feed.
+        int start;                      //offset of the first byte of incomplete line.
+        int lines;
+
+        Chunk(int bytes, int lines){
+            this.bytes = new byte[bytes];
+            this.metas = new long[lines];
+            this.packer = Packer.forSource(bytes);
+        }
+
+        /**
+         * Reads stream till the chunk is full or stream ends. Chunk is full if its bytes or packed values are exhausted,
+         * in the latter case bytes after the last added line may hold complete lines, they are scanned again
+         * by the next chunk.
+         * Chunk grows if one line does not fit it.
+         * @return - true if chunk is full and stream may have more lines.
+         * @throws IOException
+         */
+        boolean fill (InputStream in) throws IOException {
+            while (true){
+                for(; scanned < filled; scanned++){
+                    if(bytes[scanned] == '\n'){
+                        if(lines == metas.length){
+                            return true;
+                        }
+                        add(start, scanned);
+                        start = scanned + 1;
+                    }
+                }
+                if(filled == bytes.length){
+                    if(start > 0){
+                        return true;
+                    }
+                    grow();
+                }
+                int read = in.read(bytes, filled, bytes.length - filled);
+                if(read < 0){
+                    if(start < filled){
+                        if(lines == metas.length){
+                            return true;
+                        }
+                        add(start, filled);
+                        start = filled;
+                    }
+                    return false;
+                }
+                filled += read;
+            }
+        }
+
+        /**
+         * Adds line from the offset "from" to the line feed at "to", "\r" before line feed is not counted.
+         */
+        void add (int from, int to){
+            int length = to - from;
+            if(length > 0 && bytes[to - 1] == '\r'){
+                length--;
+            }
+            metas[lines++] = packer.packToLong(length, from);
+        }
+
+        void grow () throws IOException {
+            if(bytes.length == MAX_CHUNK){
+                throw new IOException("Line is too long to be sorted from stream");
+            }
+            byte[] wider = new byte[(int)Math.min((long)bytes.length * 2, MAX_CHUNK)];
+            System.arraycopy(bytes, 0, wider, 0, filled);
+            bytes = wider;
+            Packer old = packer;
+            packer = Packer.forSource(bytes.length);
+            for(int i = 0; i < lines; i++){
+                metas[i] = packer.packToLong(old.getLength(metas[i]), old.getPosition(metas[i]));
+            }
+        }
+
+        /**
+         * Starts this chunk with the incomplete line of the previous one.
+         */
+        void carry (Chunk previous){
+            int tail = previous.filled - previous.start;
+            if(bytes.length < tail){
+                bytes = new byte[previous.bytes.length];
+                packer = previous.packer;
+            }
+            System.arraycopy(previous.bytes, previous.start, bytes, 0, tail);
+            filled = tail;
+            scanned = 0;
+            start = 0;
+            lines = 0;
+        }
+
+        void sort (){
+            sorter.sort(metas, lines, packer);
+        }
+
+        void writeRun (DataOutputStream dos) throws IOException {
+            for(int i = 0; i < lines; i++){
+                int length = packer.getLength(metas[i]);
+                dos.writeInt(length);
+                dos.write(bytes, (int)packer.getPosition(metas[i]), length);
+            }
+        }
+
+        /**
+         * @return - number of bytes written.
+         */
+        long writeLines (OutputStream out) throws IOException {
+            long written = 0;
+            for(int i = 0; i < lines; i++){
+                int length = packer.getLength(metas[i]);
+                out.write(bytes, (int)packer.getPosition(metas[i]), length);
+                out.write(separator);
+                written += length + separator.length;
+            }
+            return written;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.sapashev;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Selects N shortest or longest lines of source file by one scan without sorting the whole file.
+ * Each range of source file is scanned by its own thread, which keeps the bounded heap of N packed values:
+ * the root of heap is the worst of kept lines, and it is replaced whenever better line is found.
+ * Lines are compared by length and then by position, so among lines of equal length the first ones are kept.
+ * At the end heaps of all ranges are joined and sorted, and among lines of the cut length the first ones are taken again
+ * (see {@link Selection#longest}), memory spent does not depend on size of source file.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class TopSelector {
+    private static final int BATCH = 8192;                 //values scanned at once by each thread.
+    private final Path source;
+    private final Packer packer;
+    private final Selection selection;
+    private final int concurrencyLevel;
+    private WideRecords wide = new WideRecords();
+    private SortListener listener = SortListener.NONE;
+
+    /**
+     * @param source - source file.
+     * @param packer - packer object which packs pairs (position:line length) to the long value.
+     * @param selection - number of shortest or longest lines.
+     * @param concurrencyLevel - maximal number of ranges scanned concurrently.
+     */
+    public TopSelector(Path source, Packer packer, Selection selection, int concurrencyLevel){
+        this.source = source;
+        this.packer = packer;
+        this.selection = selection;
+        this.concurrencyLevel = Math.max(concurrencyLevel, 1);
+    }
+
+    /**
+     * @param listener - listener of scanned bytes and sorts.
+     */
+    public void setListener (SortListener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * Scans source file and selects lines.
+     * @return - packed values of selected lines sorted by length, which should be closed by caller.
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public LongArray select () throws IOException, InterruptedException, ExecutionException {
+        WideRecords all = new WideRecords();
+        long[] bounds = RunGenerator.ranges(source, concurrencyLevel);
+        int parts = bounds.length - 1;
+        List<Heap> heaps = new ArrayList<>(parts);
+        ExecutorService service = Executors.newFixedThreadPool(parts);
+        try {
+            List<Future<Heap>> futures = new ArrayList<>(parts);
+            for(int i = 0; i < parts; i++){
+                final long from = bounds[i];
+                final long to = bounds[i + 1];
+                futures.add(service.submit(() -> scan(from, to, all)));
+            }
+            for(Future<Heap> f : futures){
+                heaps.add(f.get());
+            }
+        } finally {
+            service.shutdownNow();
+        }
+        int total = 0;
+        for(Heap h : heaps){
+            total += h.size;
+        }
+        long[] joined = new long[total];
+        int size = 0;
+        for(Heap h : heaps){
+            System.arraycopy(h.values, 0, joined, size, h.size);
+            size += h.size;
+        }
+        Arrays.sort(joined);                                //by position, which occupies more significant bits.
+        try(Sorter sorter = new Sorter()){
+            sorter.setListener(listener);
+            sorter.sort(joined, size, packer);
+        }
+        int limit = selection.limit();
+        int[] taken;
+        if(selection.kind() == Selection.Kind.SHORTEST){
+            taken = new int[]{0, Math.min(size, limit), size};
+        } else {
+            taken = Selection.longest(size, limit - Math.min(limit, all.size()), i -> packer.getLength(joined[i]));
+        }
+        int head = taken[1] - taken[0];
+        wide = selection.select(all, head + size - taken[2]);
+        LongArray result = new LongArray(head + size - taken[2]);
+        result.put(0, joined, taken[0], head);
+        result.put(head, joined, taken[2], size - taken[2]);
+        return result;
+    }
+
+    /**
+     * @return - selected lines which could not be packed, they go after all packed lines.
+     */
+    public WideRecords wideRecords (){
+        return wide;
+    }
+
+    /**
+     * Scans the range and keeps selected lines in the heap.
+     * @return - heap of the range.
+     * @throws IOException
+     */
+    private Heap scan (long from, long to, WideRecords all) throws IOException {
+        Heap heap = new Heap(selection.limit(), selection.kind() == Selection.Kind.SHORTEST);
+        long[] metas = new long[BATCH];
+        try(ByteScanner scanner = new ByteScanner(source, from, to, ByteScanner.DEFAULT_WINDOW, all)){
+            while (!scanner.isEOF()){
+                long position = scanner.position();
+                int count = scanner.scan(metas, BATCH, packer);
+                listener.scanned(scanner.position() - position, count);
+                for(int i = 0; i < count; i++){
+                    heap.offer(metas[i]);
+                }
+            }
+        }
+        return heap;
+    }
+
+    /**
+     * Bounded binary heap of packed values, the worst of kept values lies in the root.
+     */
+    private class Heap {
+        final int limit;
+        final boolean shortest;             //true if shorter lines are better.
+        long[] values;                      //grows up to the limit, so large limit costs nothing for small file.
+        int size;
+
+        Heap(int limit, boolean shortest){
+            this.limit = limit;
+            this.values = new long[Math.min(limit, BATCH)];
+            this.shortest = shortest;
+        }
+
+        void offer (long value){
+            if(size < limit){
+                if(size == values.length){
+                    values = Arrays.copyOf(values, (int)Math.min(limit, values.length * 2L));
+                }
+                values[size] = value;
+                up(size++);
+            } else if(size > 0 && worse(values[0], value)){
+                values[0] = value;
+                down(0);
+            }
+        }
+
+        /**
+         * @return - true if line "a" should be dropped before line "b".
+         */
+        boolean worse (long a, long b){
+            int la = packer.getLength(a);
+            int lb = packer.getLength(b);
+            if(la != lb){
+                return shortest ? la > lb : la < lb;
+            }
+            return packer.getPosition(a) > packer.getPosition(b);          //later line is worse in both directions.
+        }
+
+        void up (int i){
+            long value = values[i];
+            while (i > 0){
+                int parent = (i - 1) >>> 1;
+                if(!worse(value, values[parent])){
+                    break;
+                }
+                values[i] = values[parent];
+                i = parent;
+            }
+            values[i] = value;
+        }
+
+        void down (int i){
+            long value = values[i];
+            while (true){
+                int child = i * 2 + 1;
+                if(child >= size){
+                    break;
+                }
+                if(child + 1 < size && worse(values[child + 1], values[child])){
+                    child++;
+                }
+                if(!worse(values[child], value)){
+                    break;
+                }
+                values[i] = values[child];
+                i = child;
+            }
+            values[i] = value;
+        }
+    }
+}
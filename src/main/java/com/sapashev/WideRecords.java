@@ -0,0 +1,94 @@
+package com.sapashev;
+
+import java.util.Arrays;
+
+/**
+ * Lines which could not be packed to the one long value, because their length overflows the length field of packer.
+ * Each line is kept as 16-byte record (position:length) of two long values.
+ * All such lines are longer than any packed line, so they go after all packed lines, ordered by length
+ * and then by position. Such lines are rare (each of them is at least 2^minor bytes long), so records are held
+ * in memory.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class WideRecords {
+    private long[] records = new long[16];
+    private int size;                                   //number of records.
+
+    /**
+     * Adds line, may be invoked by several scanners concurrently.
+     * @param position - position of line start in bytes.
+     * @param length - length of line in bytes.
+     */
+    public synchronized void add (long position, long length){
+        if(size * 2 == records.length){
+            records = Arrays.copyOf(records, records.length * 2);
+        }
+        records[size * 2] = position;
+        records[size * 2 + 1] = length;
+        size++;
+    }
+
+    /**
+     * @return - number of lines.
+     */
+    public synchronized int size (){
+        return size;
+    }
+
+    public synchronized boolean isEmpty (){
+        return size == 0;
+    }
+
+    /**
+     * @return - records in order of result file, each record is array of position and length.
+     */
+    public synchronized long[][] sorted (){
+        long[][] result = new long[size][];
+        for(int i = 0; i < size; i++){
+            result[i] = new long[]{records[i * 2], records[i * 2 + 1]};
+        }
+        Arrays.sort(result, (a, b) -> a[1] != b[1] ? Long.compare(a[1], b[1]) : Long.compare(a[0], b[0]));
+        return result;
+    }
+
+    /**
+     * Drops lines which repeat previous ones, the first of equal lines is kept. Each line is compared
+     * by bytes with kept lines of the same length, the first different word usually ends comparison.
+     * @param src - source file.
+     * @return - lines without repeats.
+     */
+    public WideRecords distinct (MappedSource src){
+        WideRecords result = new WideRecords();
+        int group = 0;                                  //first kept record of current length.
+        for(long[] record : sorted()){
+            if(result.size > 0 && result.records[group * 2 + 1] != record[1]){
+                group = result.size;
+            }
+            boolean repeated = false;
+            for(int i = group; i < result.size && !repeated; i++){
+                repeated = equal(src, result.records[i * 2], record[0], record[1]);
+            }
+            if(!repeated){
+                result.add(record[0], record[1]);
+            }
+        }
+        return result;
+    }
+
+    private static boolean equal (MappedSource src, long a, long b, long length){
+        long i = 0;
+        for(; i + Long.BYTES <= length; i += Long.BYTES){
+            if(src.getLong(a + i) != src.getLong(b + i)){
+                return false;
+            }
+        }
+        for(; i < length; i++){
+            if(src.get(a + i) != src.get(b + i)){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+package com.sapashev;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sequential writer of the result file through the small fixed number of direct buffer windows.
+ * Bytes are put to the current window, when it is full it is written to its region of file in background
+ * and the next window (tracked by index) becomes current. Window is reused only after its previous write finished.
+ * So at most "windows * size" bytes of result are held in memory regardless of result file size.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class WindowedOutput implements Closeable {
+    public static final int DEFAULT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_WINDOWS = 2;
+    private final FileChannel channel;
+    private final ByteBuffer[] windows;
+    private final Future<?>[] writes;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private int current;                    //index of window which is filled now.
+    private long position;                  //position in file of the first byte of current window.
+
+    /**
+     * @param channel - result file channel opened for writing.
+     * @param size - size of each window in bytes.
+     * @param windows - number of windows.
+     */
+    public WindowedOutput(FileChannel channel, int size, int windows){
+        this.channel = channel;
+        this.windows = new ByteBuffer[Math.max(windows, 1)];
+        this.writes = new Future<?>[this.windows.length];
+        for(int i = 0; i < this.windows.length; i++){
+            this.windows[i] = ByteBuffer.allocateDirect(size);
+        }
+    }
+
+    /**
+     * Puts bytes to the current window, advancing to the next windows as much as needed.
+     * @param bytes - array which contains bytes to be written.
+     * @param offset - first byte in array.
+     * @param length - number of bytes.
+     * @throws IOException
+     */
+    public void put (byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0){
+            ByteBuffer window = windows[current];
+            int chunk = Math.min(length, window.remaining());
+            window.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+            if(!window.hasRemaining()){
+                advance();
+            }
+        }
+    }
+
+    /**
+     * Starts background write of current window and makes the next window current.
+     * @throws IOException
+     */
+    private void advance () throws IOException {
+        ByteBuffer window = windows[current];
+        window.flip();
+        final long start = position;
+        writes[current] = writer.submit(() -> {
+            long at = start;
+            while (window.hasRemaining()){
+                at += channel.write(window, at);
+            }
+            return null;
+        });
+        position += window.limit();
+        current = (current + 1) % windows.length;
+        await(current);
+        windows[current].clear();
+    }
+
+    /**
+     * Waits until previous write of window finishes.
+     * @throws IOException
+     */
+    private void await (int index) throws IOException {
+        if(writes[index] == null){
+            return;
+        }
+        try {
+            writes[index].get();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e){
+            throw new IOException(e.getCause());
+        } finally {
+            writes[index] = null;
+        }
+    }
+
+    /**
+     * @return - number of bytes put to the output.
+     */
+    public long size (){
+        return position + windows[current].position();
+    }
+
+    /**
+     * Writes the rest of bytes and waits for all background writes.
+     * @throws IOException
+     */
+    @Override
+    public void close () throws IOException {
+        try {
+            if(windows[current].position() > 0){
+                advance();
+            }
+            for(int i = 0; i < windows.length; i++){
+                await(i);
+            }
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+}
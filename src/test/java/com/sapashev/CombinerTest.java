@@ -0,0 +1,104 @@
+package com.sapashev;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Saves sorted runs by combiner and joins natural runs among them, checks values and spill capacity left after join.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class CombinerTest {
+    private static final Packer PACKER = new Packer(24, 40);
+    private static final long CAPACITY = 1024 * 1024;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private SpillManager spills;
+    private Combiner combiner;
+    private File dir;
+
+    @Before
+    public void setUp () throws IOException {
+        dir = folder.newFolder();
+        spills = new SpillManager(Collections.singletonList(dir.getPath() + "@" + CAPACITY), SpillManager.Placement.ROUND_ROBIN);
+        combiner = new Combiner(spills);
+    }
+
+    @Test
+    public void whenRunsFollowOneAnotherByLengthThenJoinedToOne () throws IOException {
+        long[][] runs = {run(0, 10, 1000), run(10, 20, 1000), {}, run(20, 20, 500)};
+        List<File> joined = combiner.joinNaturalRuns(save(runs), PACKER);
+        assertEquals(1, joined.size());
+        assertArrayEquals(concat(runs), read(joined.get(0)));
+        assertEquals(1, dir.list().length);
+    }
+
+    @Test
+    public void whenRunsOverlapByLengthThenOnlyNaturalOnesAreJoined () throws IOException {
+        long[][] runs = {run(0, 10, 100), run(10, 20, 100), run(5, 30, 100), run(30, 40, 100)};
+        List<File> joined = combiner.joinNaturalRuns(save(runs), PACKER);
+        assertEquals(2, joined.size());
+        assertArrayEquals(concat(runs[0], runs[1]), read(joined.get(0)));
+        assertArrayEquals(concat(runs[2], runs[3]), read(joined.get(1)));
+    }
+
+    @Test
+    public void whenRunsAreJoinedThenReservationFollowsJoinedRun () throws IOException {
+        long[][] runs = {run(0, 10, 5000), run(10, 20, 5000), run(20, 30, 5000)};
+        File joined = combiner.joinNaturalRuns(save(runs), PACKER).get(0);
+        spills.create("arsRUN_", CAPACITY - joined.length());
+        try {
+            spills.create("arsRUN_", 1);
+            fail("Reservation of joined run is less than its size");
+        } catch (IOException e){
+            //directory is full.
+        }
+    }
+
+    /**
+     * @return - packed values of lengths from min to max ascending, positions follow index of value.
+     */
+    private static long[] run (int min, int max, int size){
+        long[] values = new long[size];
+        for(int i = 0; i < size; i++){
+            values[i] = PACKER.packToLong(min + (int)((long)(max - min) * i / Math.max(size - 1, 1)), i * 100L);
+        }
+        return values;
+    }
+
+    private List<File> save (long[][] runs) throws IOException {
+        List<File> files = new ArrayList<>();
+        for(long[] run : runs){
+            files.add(combiner.saveToTempFile(run, PACKER));
+        }
+        return files;
+    }
+
+    private static long[] concat (long[]... runs){
+        return Arrays.stream(runs).flatMapToLong(Arrays::stream).toArray();
+    }
+
+    private static long[] read (File f) throws IOException {
+        try(RunReader reader = new RunReader(f, PACKER, RunReader.DEFAULT_BUFFER)){
+            long[] values = new long[(int)reader.count()];
+            for(int i = 0; i < values.length; i++){
+                values[i] = reader.next();
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.sapashev;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Copies lines in order of reference sorted by length, in parallel, gathered by source positions
+ * or through output windows, and compares result with the stable sort of lines by length.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class CopierTest {
+    private static final byte[] SEPARATOR = Copier.DEFAULT_SEPARATOR.getBytes(StandardCharsets.UTF_8);
+    private static final long WINDOW = 4 * 1024 * 1024;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenReferenceIsCutToManyPartitionsThenLinesKeepOrder () throws Exception {
+        List<String> lines = StreamSorterTest.lines(300000, 0, 60);
+        Path source = source(lines);
+        Packer p = Packer.forSource(Files.size(source));
+        Path result = new Copier().parallelCopy(source, folder.getRoot().toPath().resolve("sorted"), SEPARATOR,
+                reference(lines, p), p, 4, WINDOW, false);
+        assertEquals(expected(lines), read(result));
+    }
+
+    @Test
+    public void whenWindowsAreGatheredThenLinesKeepOrder () throws Exception {
+        List<String> lines = StreamSorterTest.lines(300000, 0, 60);
+        Refusals refusals = new Refusals();
+        assertEquals(expected(lines), gather(lines, refusals));
+        assertEquals(0, refusals.windows.get());
+    }
+
+    @Test
+    public void whenLineIsLongerThanWindowThenItsWindowIsCopiedInOrderOfReference () throws Exception {
+        List<String> lines = StreamSorterTest.lines(1000, 0, 60);
+        lines.add(500, StreamSorterTest.lines(1, (int)WINDOW + 1, (int)WINDOW + 1).get(0));
+        Refusals refusals = new Refusals();
+        assertEquals(expected(lines), gather(lines, refusals));
+        assertEquals(1, refusals.windows.get());
+    }
+
+    @Test
+    public void whenLinesCrossSourceBuffersThenCopiedThroughSmallWindows () throws Exception {
+        List<String> lines = StreamSorterTest.lines(20000, 0, 60);
+        Path source = source(lines);
+        Packer p = Packer.forSource(Files.size(source));
+        Copier copier = new Copier();
+        copier.boundary = 1000;
+        Path result = folder.getRoot().toPath().resolve("sorted");
+        copier.multiBufferDirectCopy(source, result, SEPARATOR, reference(lines, p), p, 4096, 3);
+        assertEquals(expected(lines), read(result));
+    }
+
+    @Test
+    public void whenReferenceIsEmptyThenResultIsEmpty () throws Exception {
+        Path source = source(new ArrayList<>());
+        Packer p = Packer.forSource(1);
+        Path result = new Copier().parallelCopy(source, folder.getRoot().toPath().resolve("sorted"), SEPARATOR,
+                new ArrayReference(new long[0], 0, p), p, 2);
+        assertEquals(0, Files.size(result));
+    }
+
+    private String gather (List<String> lines, SortListener listener) throws Exception {
+        Path source = source(lines);
+        Packer p = Packer.forSource(Files.size(source));
+        Copier copier = new Copier();
+        copier.setListener(listener);
+        return read(copier.parallelCopy(source, folder.getRoot().toPath().resolve("sorted"), SEPARATOR,
+                reference(lines, p), p, 4, WINDOW, true));
+    }
+
+    private Path source (List<String> lines) throws Exception {
+        Path source = folder.newFile().toPath();
+        StringBuilder sb = new StringBuilder();
+        for(String line : lines){
+            sb.append(line).append('\n');
+        }
+        Files.write(source, sb.toString().getBytes(StandardCharsets.UTF_8));
+        return source;
+    }
+
+    /**
+     * @return - packed values of lines sorted by length, lines of equal length go in order of source.
+     */
+    private static ArrayReference reference (List<String> lines, Packer p){
+        long[] metas = new long[lines.size()];
+        long position = 0;
+        for(int i = 0; i < metas.length; i++){
+            int length = lines.get(i).length();
+            metas[i] = p.packToLong(length, position);
+            position += length + 1;
+        }
+        Long[] boxed = Arrays.stream(metas).boxed().toArray(Long[]::new);
+        Arrays.sort(boxed, (a, b) -> Integer.compare(p.getLength(a), p.getLength(b)));
+        metas = Arrays.stream(boxed).mapToLong(Long::longValue).toArray();
+        return new ArrayReference(metas, metas.length, p);
+    }
+
+    private static String expected (List<String> lines){
+        List<String> sorted = new ArrayList<>(lines);
+        sorted.sort((a, b) -> Integer.compare(a.length(), b.length()));
+        StringBuilder sb = new StringBuilder();
+        for(String line : sorted){
+            sb.append(line).append(Copier.DEFAULT_SEPARATOR);
+        }
+        return sb.toString();
+    }
+
+    private static String read (Path result) throws Exception {
+        return new String(Files.readAllBytes(result), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Counts windows which were not gathered.
+     */
+    private static class Refusals implements SortListener {
+        private final AtomicInteger windows = new AtomicInteger();
+
+        @Override
+        public void gatherRefused (long bytes, long lines){
+            windows.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.sapashev;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sorts files by counting sort and compares result with the stable sort of lines by length.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class CountingSorterTest {
+    private static final byte[] SEPARATOR = {'\n'};
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenOneRangeThenLinesOfEqualLengthKeepTheirOrder () throws Exception {
+        List<String> lines = StreamSorterTest.lines(100000, 0, 50);
+        assertEquals(expected(lines), sort(lines, new MemoryBudget(64 * 1024 * 1024), 1));
+    }
+
+    @Test
+    public void whenRangesAreScannedByManyBatchesThenOffsetsFollowRanges () throws Exception {
+        List<String> lines = StreamSorterTest.lines(300000, 0, 50);
+        assertEquals(expected(lines), sort(lines, new MemoryBudget(64 * 1024), 4));
+    }
+
+    @Test
+    public void whenLengthTablesExceedBudgetThenDestinationIsNotCreated () throws Exception {
+        List<String> lines = StreamSorterTest.lines(100, 0, 10);
+        lines.add(StreamSorterTest.lines(1, 3000, 3000).get(0));
+        Path source = source(lines);
+        Path destination = source.resolveSibling("sorted");
+        CountingSorter sorter = new CountingSorter(source, Packer.forSource(Files.size(source)),
+                SEPARATOR, new MemoryBudget(64 * 1024), 1);
+        assertFalse(sorter.sort(destination));
+        assertFalse(Files.exists(destination));
+        assertEquals(expected(lines), sort(lines, new MemoryBudget(1024 * 1024), 1));
+    }
+
+    @Test
+    public void whenLineIsTooLongToBeCountedThenDestinationIsNotCreated () throws Exception {
+        List<String> lines = StreamSorterTest.lines(100, 0, 10);
+        lines.add(StreamSorterTest.lines(1, CountingSorter.MAX_LENGTH, CountingSorter.MAX_LENGTH).get(0));
+        Path source = source(lines);
+        Path destination = source.resolveSibling("sorted");
+        CountingSorter sorter = new CountingSorter(source, Packer.forSource(Files.size(source)),
+                SEPARATOR, new MemoryBudget(1024 * 1024), 2);
+        assertFalse(sorter.sort(destination));
+        assertFalse(Files.exists(destination));
+    }
+
+    private Path source (List<String> lines) throws Exception {
+        Path source = folder.newFile().toPath();
+        Files.write(source, joined(lines).getBytes(StandardCharsets.UTF_8));
+        return source;
+    }
+
+    private String sort (List<String> lines, MemoryBudget budget, int concurrencyLevel) throws Exception {
+        Path source = source(lines);
+        Path destination = source.resolveSibling("sorted");
+        CountingSorter sorter = new CountingSorter(source, Packer.forSource(Files.size(source)),
+                SEPARATOR, budget, concurrencyLevel);
+        assertTrue(sorter.sort(destination));
+        return new String(Files.readAllBytes(destination), StandardCharsets.UTF_8);
+    }
+
+    private static String expected (List<String> lines){
+        List<String> sorted = new ArrayList<>(lines);
+        sorted.sort(Comparator.comparingInt(String::length));
+        return joined(sorted);
+    }
+
+    private static String joined (List<String> lines){
+        StringBuilder sb = new StringBuilder();
+        for(String line : lines){
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+}
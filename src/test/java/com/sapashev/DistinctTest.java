@@ -0,0 +1,94 @@
+package com.sapashev;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sorts files with many repeated lines in distinct orders, with records in memory and in spilled runs,
+ * and compares result with the stable sort of the first occurrences of lines.
+ * Lines of equal length ordered by length only go in order of fingerprints, so only lengths and the set of lines
+ * are compared in that order.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class DistinctTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenDistinctByWholeLineThenEachLineGoesOnce () throws Exception {
+        List<String> lines = KeyOrderTest.lines(200000, 12);
+        for(String memory : new String[]{"64m", "64k"}){
+            assertEquals(memory, expected(lines, Comparator.naturalOrder()), sort(lines, "lex", memory, null));
+        }
+    }
+
+    @Test
+    public void whenDistinctByLengthAndWholeLineThenEachLineGoesOnce () throws Exception {
+        List<String> lines = KeyOrderTest.lines(200000, 12);
+        Comparator<String> order = Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+        for(String memory : new String[]{"64m", "64k"}){
+            assertEquals(memory, expected(lines, order), sort(lines, "length,lex", memory, null));
+        }
+    }
+
+    @Test
+    public void whenDistinctByLengthThenEachLineGoesOnceInOrderOfLength () throws Exception {
+        List<String> lines = KeyOrderTest.lines(200000, 14);
+        for(String memory : new String[]{"64m", "64k"}){
+            checkByLength(lines, sort(lines, "length", memory, null));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenDistinctLinesOrderedByFieldThenRefused (){
+        KeyOrder.parse("field:,:1").distinct();
+    }
+
+    @Test
+    public void whenLinesOverflowLengthFieldThenTheirRepeatsAreDroppedToo () throws Exception {
+        List<String> pool = KeyOrderTest.lines(300, 300);
+        List<String> lines = new ArrayList<>();
+        for(int i = 0; i < 20000; i++){
+            lines.add(pool.get(i * 7 % pool.size()));
+        }
+        checkByLength(lines, sort(lines, "length", "64m", new Packer(7, 40)));
+    }
+
+    private String sort (List<String> lines, String order, String memory, Packer packer) throws Exception {
+        ExternalLineSorter.Builder builder = ExternalLineSorter.builder().memory(memory)
+                .order(KeyOrder.parse(order)).distinct(true);
+        if(packer != null){
+            builder.packer(packer);
+        }
+        return ExternalLineSorterTest.sort(folder, lines, builder, SortResult.Mode.KEYED);
+    }
+
+    private static void checkByLength (List<String> lines, String sorted){
+        List<String> result = Arrays.asList(sorted.split("\n", -1));
+        result = result.subList(0, result.size() - 1);
+        assertEquals(new LinkedHashSet<>(lines).size(), result.size());
+        assertEquals(new TreeSet<>(lines), new TreeSet<>(result));
+        for(int i = 1; i < result.size(); i++){
+            assertTrue(result.get(i - 1).length() <= result.get(i).length());
+        }
+    }
+
+    private static String expected (List<String> lines, Comparator<String> comparator){
+        List<String> sorted = new ArrayList<>(new LinkedHashSet<>(lines));
+        sorted.sort(comparator);
+        return ExternalLineSorterTest.joined(sorted);
+    }
+}
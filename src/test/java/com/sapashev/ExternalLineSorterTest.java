@@ -0,0 +1,119 @@
+package com.sapashev;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Sorts files by each mode of sorter (in memory, by merging of runs, by counting sort, in streaming mode)
+ * and compares result with the stable sort of lines by length.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class ExternalLineSorterTest {
+    static final byte[] SEPARATOR = {'\n'};
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenLinesFitMemoryThenSortedInMemory () throws Exception {
+        List<String> lines = StreamSorterTest.lines(100000, 0, 40);
+        String sorted = sort(folder, lines, ExternalLineSorter.builder().memory("64m"), SortResult.Mode.IN_MEMORY);
+        assertEquals(byLength(lines), sorted);
+    }
+
+    @Test
+    public void whenLinesExceedMemoryThenRunsAreMerged () throws Exception {
+        List<String> lines = StreamSorterTest.lines(300000, 0, 40);
+        String sorted = sort(folder, lines, ExternalLineSorter.builder().memory("256k"), SortResult.Mode.MERGE);
+        assertEquals(byLength(lines), sorted);
+    }
+
+    @Test
+    public void whenCountingEngineThenLinesAreScatteredByLength () throws Exception {
+        List<String> lines = StreamSorterTest.lines(300000, 0, 40);
+        String sorted = sort(folder, lines, ExternalLineSorter.builder().memory("256k").engine(Engine.COUNTING),
+                SortResult.Mode.COUNTING);
+        assertEquals(byLength(lines), sorted);
+    }
+
+    @Test
+    public void whenLinesOverflowLengthFieldThenAppendedAfterAllOthers () throws Exception {
+        List<String> lines = StreamSorterTest.lines(20000, 0, 300);
+        String sorted = sort(folder, lines, ExternalLineSorter.builder().memory("64m").packer(new Packer(7, 40)),
+                SortResult.Mode.IN_MEMORY);
+        assertEquals(byLength(lines), sorted);
+    }
+
+    @Test
+    public void whenSourceIsChannelThenSortedInStreamingMode () throws Exception {
+        List<String> lines = StreamSorterTest.lines(100000, 0, 40);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SortResult result = ExternalLineSorter.builder()
+                .source(Channels.newChannel(new ByteArrayInputStream(joined(lines).getBytes(StandardCharsets.UTF_8))))
+                .destination(Channels.newChannel(out))
+                .separator(SEPARATOR)
+                .memory("1m")
+                .spills(new SpillManager(Collections.singletonList(folder.newFolder().getPath()), SpillManager.Placement.ROUND_ROBIN))
+                .build()
+                .sort();
+        assertEquals(SortResult.Mode.STREAM, result.mode());
+        assertEquals(byLength(lines), out.toString("UTF-8"));
+    }
+
+    /**
+     * Writes lines to the source file and sorts it to the destination file with spills in the own directory,
+     * which should be empty after sort.
+     * @param builder - sorter options, source, destination, separator and spills are set here.
+     * @param mode - expected mode of sort.
+     * @return - content of destination file.
+     */
+    static String sort (TemporaryFolder folder, List<String> lines, ExternalLineSorter.Builder builder,
+                        SortResult.Mode mode) throws Exception {
+        Path source = folder.newFile().toPath();
+        Files.write(source, joined(lines).getBytes(StandardCharsets.UTF_8));
+        Path destination = source.resolveSibling(source.getFileName() + ".sorted");
+        File spills = folder.newFolder();
+        SortResult result = builder.source(source)
+                .destination(destination)
+                .separator(SEPARATOR)
+                .spills(new SpillManager(Collections.singletonList(spills.getPath()), SpillManager.Placement.ROUND_ROBIN))
+                .build()
+                .sort();
+        assertEquals(mode, result.mode());
+        assertEquals(0, spills.list().length);
+        return new String(Files.readAllBytes(destination), StandardCharsets.UTF_8);
+    }
+
+    static String joined (List<String> lines){
+        StringBuilder sb = new StringBuilder();
+        for(String line : lines){
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return - lines in order of stable sort by length.
+     */
+    private static String byLength (List<String> lines){
+        List<String> sorted = new ArrayList<>(lines);
+        sorted.sort(Comparator.comparingInt(String::length));
+        return joined(sorted);
+    }
+}
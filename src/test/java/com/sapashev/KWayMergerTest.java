@@ -0,0 +1,119 @@
+package com.sapashev;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Merges sorted runs by the loser tree, by one pass or several, and compares result with the stable sort of all values by length: equal lengths go in order of runs.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class KWayMergerTest {
+    static final Packer PACKER = new Packer(24, 40);
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private SpillManager spills;
+    private File dir;
+
+    @Before
+    public void setUp () throws IOException {
+        dir = folder.newFolder();
+        spills = new SpillManager(Collections.singletonList(dir.getPath()), SpillManager.Placement.ROUND_ROBIN);
+    }
+
+    @Test
+    public void whenRunsFitFanInThenMergedByOnePass () throws IOException {
+        long[] values = values(100000, 64);
+        List<File> runs = runs(spills, values, 10);
+        KWayMerger merger = new KWayMerger(PACKER, KWayMerger.DEFAULT_FAN_IN, KWayMerger.DEFAULT_MEMORY, spills);
+        check(spills, dir, values, merger.merge(runs));
+    }
+
+    @Test
+    public void whenRunsExceedFanInThenMergedBySeveralPasses () throws IOException {
+        long[] values = values(100000, 1000);
+        List<File> runs = runs(spills, values, 37);
+        KWayMerger merger = new KWayMerger(PACKER, 3, 1024 * 1024, spills);
+        check(spills, dir, values, merger.merge(runs));
+    }
+
+    @Test
+    public void whenSomeRunsAreEmptyThenTheyAreSkipped () throws IOException {
+        long[] values = values(1000, 8);
+        List<File> runs = runs(spills, values, 4);
+        runs.add(2, runs(spills, new long[0], 1).get(0));
+        runs.add(runs(spills, new long[0], 1).get(0));
+        KWayMerger merger = new KWayMerger(PACKER, 4, 1024 * 1024, spills);
+        check(spills, dir, values, merger.merge(runs));
+    }
+
+    /**
+     * Reads merged file and checks that all other temp files of directory were deleted by merge.
+     */
+    static void check (SpillManager spills, File dir, long[] values, File merged) throws IOException {
+        long[] expected = Arrays.stream(values).boxed()
+                .sorted((a, b) -> Integer.compare(PACKER.getLength(a), PACKER.getLength(b)))
+                .mapToLong(Long::longValue).toArray();
+        try(RunReader reader = new RunReader(merged, PACKER, RunReader.DEFAULT_BUFFER)){
+            long[] read = new long[(int)reader.count()];
+            for(int i = 0; i < read.length; i++){
+                read[i] = reader.next();
+            }
+            assertArrayEquals(expected, read);
+        }
+        spills.delete(merged);
+        assertEquals(0, dir.list().length);
+    }
+
+    /**
+     * @return - packed values of random lengths, positions ascend as in source.
+     */
+    static long[] values (int size, int maxLength){
+        Random random = new Random(size);
+        long[] values = new long[size];
+        for(int i = 0; i < size; i++){
+            values[i] = PACKER.packToLong(random.nextInt(maxLength), i);
+        }
+        return values;
+    }
+
+    /**
+     * Splits values to the consecutive parts of random size and saves each part sorted as run.
+     */
+    static List<File> runs (SpillManager spills, long[] values, int count) throws IOException {
+        Random random = new Random(count);
+        int[] bounds = new int[count + 1];
+        for(int i = 1; i < count; i++){
+            bounds[i] = random.nextInt(values.length + 1);
+        }
+        bounds[count] = values.length;
+        Arrays.sort(bounds);
+        List<File> runs = new ArrayList<>(count);
+        try(Sorter sorter = new Sorter()){
+            for(int i = 0; i < count; i++){
+                long[] run = Arrays.copyOfRange(values, bounds[i], bounds[i + 1]);
+                sorter.sort(run, run.length, PACKER);
+                File f = spills.create("arsRUN_", (long)run.length * Long.BYTES);
+                try(RunWriter writer = new RunWriter(f, PACKER, RunWriter.DEFAULT_BUFFER)){
+                    writer.write(run, run.length);
+                }
+                runs.add(f);
+            }
+        }
+        return runs;
+    }
+}
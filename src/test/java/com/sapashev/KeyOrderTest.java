@@ -0,0 +1,110 @@
+package com.sapashev;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Sorts files in orders with secondary key, with records in memory and in spilled runs,
+ * and compares result with the stable sort of lines by the same keys.
+ * Lines are made of few characters, so many keys are longer than prefix and share their first bytes.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class KeyOrderTest {
+    private static final Comparator<String> LENGTH = Comparator.comparingInt(String::length);
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenOrderedByWholeLineThenSortedAsBytes () throws Exception {
+        check("lex", Comparator.naturalOrder());
+    }
+
+    @Test
+    public void whenOrderedByLengthAndWholeLineThenBytesOrderLinesOfEqualLength () throws Exception {
+        check("length,lex", LENGTH.thenComparing(Comparator.naturalOrder()));
+    }
+
+    @Test
+    public void whenOrderedByFieldThenLinesWithoutFieldGoFirst () throws Exception {
+        check("field:,:2", Comparator.comparing(l -> field(l, 2)));
+    }
+
+    @Test
+    public void whenOrderedByLengthAndFieldThenFieldOrdersLinesOfEqualLength () throws Exception {
+        check("length,field:,:3", LENGTH.thenComparing(l -> field(l, 3)));
+    }
+
+    @Test
+    public void whenOrderedByTabSeparatedFieldThenDelimiterIsTab () throws Exception {
+        List<String> lines = new ArrayList<>();
+        for(String line : lines(20000, 16)){
+            lines.add(line.replace(',', '\t'));
+        }
+        assertEquals(expected(lines, Comparator.comparing(l -> field(l.replace('\t', ','), 2))),
+                ExternalLineSorterTest.sort(folder, lines, ExternalLineSorter.builder().memory("64m")
+                        .order(KeyOrder.parse("field:\\t:2")), SortResult.Mode.KEYED));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenOrderIsUnknownThenRefused (){
+        KeyOrder.parse("length,size");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenDelimiterIsLongerThanOneCharacterThenRefused (){
+        KeyOrder.parse("field:ab:1");
+    }
+
+    /**
+     * Sorts the same lines with records in memory and with records spilled to many runs merged by several passes.
+     */
+    private void check (String order, Comparator<String> comparator) throws Exception {
+        List<String> lines = lines(200000, 24);
+        String expected = expected(lines, comparator);
+        for(String memory : new String[]{"64m", "64k"}){
+            assertEquals(order + " in " + memory, expected, ExternalLineSorterTest.sort(folder, lines,
+                    ExternalLineSorter.builder().memory(memory).order(KeyOrder.parse(order)), SortResult.Mode.KEYED));
+        }
+    }
+
+    /**
+     * @return - lines of characters "a", "b" and "," of random length.
+     */
+    static List<String> lines (int count, int maxLength){
+        Random random = new Random(count);
+        char[] chars = {'a', 'b', ','};
+        List<String> lines = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            char[] line = new char[random.nextInt(maxLength + 1)];
+            for(int y = 0; y < line.length; y++){
+                line[y] = chars[random.nextInt(random.nextInt(4) == 0 ? 3 : 2)];
+            }
+            lines.add(new String(line));
+        }
+        return lines;
+    }
+
+    /**
+     * @return - field of line delimited by commas, starting from 1, or empty string if line has less fields.
+     */
+    private static String field (String line, int index){
+        String[] fields = line.split(",", -1);
+        return index <= fields.length ? fields[index - 1] : "";
+    }
+
+    private static String expected (List<String> lines, Comparator<String> comparator){
+        List<String> sorted = new ArrayList<>(lines);
+        sorted.sort(comparator);
+        return ExternalLineSorterTest.joined(sorted);
+    }
+}
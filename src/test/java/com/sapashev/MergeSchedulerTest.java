@@ -0,0 +1,47 @@
+package com.sapashev;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Merges sorted runs by the tree of concurrent merges and compares result with the stable sort of all values
+ * by length (see {@link KWayMergerTest}).
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class MergeSchedulerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private SpillManager spills;
+    private File dir;
+
+    @Before
+    public void setUp () throws IOException {
+        dir = folder.newFolder();
+        spills = new SpillManager(Collections.singletonList(dir.getPath()), SpillManager.Placement.ROUND_ROBIN);
+    }
+
+    @Test
+    public void whenRunsAreMergedConcurrentlyThenOrderIsTheSame () throws IOException {
+        long[] values = KWayMergerTest.values(200000, 500);
+        List<File> runs = KWayMergerTest.runs(spills, values, 50);
+        MergeScheduler scheduler = new MergeScheduler(KWayMergerTest.PACKER, 4, 2, new MemoryBudget(4 * 1024 * 1024), 4, spills);
+        KWayMergerTest.check(spills, dir, values, scheduler.merge(runs));
+    }
+
+    @Test
+    public void whenRunsFitFanInThenMergedByOneTask () throws IOException {
+        long[] values = KWayMergerTest.values(10000, 50);
+        List<File> runs = KWayMergerTest.runs(spills, values, 3);
+        MergeScheduler scheduler = new MergeScheduler(KWayMergerTest.PACKER, 4, 2, new MemoryBudget(4 * 1024 * 1024), 4, spills);
+        KWayMergerTest.check(spills, dir, values, scheduler.merge(runs));
+    }
+}
@@ -0,0 +1,158 @@
+package com.sapashev;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes packed values by RunWriter and reads them back by RunReader: values of several blocks,
+ * sorted and unsorted, with and without prefixes, and runs joined by concat.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class RunCodecTest {
+    private static final Packer PACKER = new Packer(24, 40);
+    private static final int SIZE = RunWriter.BLOCK * 3 + 17;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenUnsortedValuesWrittenThenReadInTheSameOrder () throws IOException {
+        long[] values = values(SIZE, false);
+        File f = folder.newFile();
+        try(RunWriter writer = new RunWriter(f, PACKER, 4096)){
+            for(long v : values){
+                writer.write(v);
+            }
+        }
+        assertArrayEquals(values, read(f, 4096, null));
+    }
+
+    @Test
+    public void whenSortedValuesWrittenInBulkThenReadBackWithCountAndMaxLength () throws IOException {
+        long[] values = values(SIZE, true);
+        File f = folder.newFile();
+        try(LongArray array = new LongArray(values.length);
+            RunWriter writer = new RunWriter(f, PACKER, RunWriter.DEFAULT_BUFFER)){
+            for(int i = 0; i < values.length; i++){
+                array.set(i, values[i]);
+            }
+            writer.write(array, values.length);
+        }
+        try(RunReader reader = new RunReader(f, PACKER, RunReader.DEFAULT_BUFFER)){
+            assertEquals(values.length, reader.count());
+            assertEquals(PACKER.getLength(values[values.length - 1]), reader.maxLength());
+            assertFalse(reader.isPrefixed());
+        }
+        assertArrayEquals(values, read(f, RunReader.DEFAULT_BUFFER, null));
+    }
+
+    @Test
+    public void whenValuesWrittenWithPrefixesThenPrefixesReadWithThem () throws IOException {
+        long[] values = values(SIZE, true);
+        long[] prefixes = new long[values.length];
+        Random random = new Random(SIZE);
+        for(int i = 0; i < prefixes.length; i++){
+            prefixes[i] = i % 5 == 0 ? random.nextLong() : (i % 5 == 1 ? Long.MIN_VALUE : -1L - i);
+        }
+        File f = folder.newFile();
+        try(RunWriter writer = new RunWriter(f, PACKER, 4096, true)){
+            for(int i = 0; i < values.length; i++){
+                writer.write(values[i], prefixes[i]);
+            }
+        }
+        long[] read = new long[values.length];
+        assertArrayEquals(values, read(f, 4096, read));
+        assertArrayEquals(prefixes, read);
+    }
+
+    @Test
+    public void whenRunIsEmptyThenNothingIsRead () throws IOException {
+        File f = folder.newFile();
+        new RunWriter(f, PACKER, RunWriter.DEFAULT_BUFFER).close();
+        assertArrayEquals(new long[0], read(f, RunReader.DEFAULT_BUFFER, null));
+    }
+
+    @Test
+    public void whenRunsConcatenatedThenTargetHoldsValuesOfAllOfThem () throws IOException {
+        long[] values = values(SIZE, false);
+        int[] bounds = {0, 100, RunWriter.BLOCK + 1, SIZE};
+        File[] runs = new File[bounds.length - 1];
+        for(int r = 0; r < runs.length; r++){
+            runs[r] = folder.newFile();
+            try(RunWriter writer = new RunWriter(runs[r], PACKER, RunWriter.DEFAULT_BUFFER)){
+                writer.write(Arrays.copyOfRange(values, bounds[r], bounds[r + 1]), bounds[r + 1] - bounds[r]);
+            }
+        }
+        RunWriter.concat(runs[0], Arrays.asList(runs[1], runs[2]));
+        assertArrayEquals(values, read(runs[0], RunReader.DEFAULT_BUFFER, null));
+    }
+
+    @Test(expected = IOException.class)
+    public void whenRunsOfDifferentKindsConcatenatedThenRefused () throws IOException {
+        File plain = folder.newFile();
+        File prefixed = folder.newFile();
+        try(RunWriter writer = new RunWriter(plain, PACKER, RunWriter.DEFAULT_BUFFER)){
+            writer.write(PACKER.packToLong(1, 0));
+        }
+        try(RunWriter writer = new RunWriter(prefixed, PACKER, RunWriter.DEFAULT_BUFFER, true)){
+            writer.write(PACKER.packToLong(1, 2), 7);
+        }
+        RunWriter.concat(plain, Arrays.asList(prefixed));
+    }
+
+    @Test(expected = IOException.class)
+    public void whenFileIsNotRunThenReaderRefusesIt () throws IOException {
+        new RunReader(folder.newFile(), PACKER, RunReader.DEFAULT_BUFFER).close();
+    }
+
+    /**
+     * @return - packed values of random lengths and positions, ascending by length if sorted,
+     * lengths and positions of neighbours differ by both small and large deltas.
+     */
+    private static long[] values (int size, boolean sorted){
+        Random random = new Random(size);
+        long[] values = new long[size];
+        for(int i = 0; i < size; i++){
+            int length = random.nextBoolean() ? random.nextInt(16) : random.nextInt(1 << 24);
+            long position = random.nextBoolean() ? i : random.nextLong() & ((1L << 40) - 1);
+            values[i] = PACKER.packToLong(length, position);
+        }
+        if(sorted){
+            Long[] boxed = Arrays.stream(values).boxed().toArray(Long[]::new);
+            Arrays.sort(boxed, (a, b) -> Integer.compare(PACKER.getLength(a), PACKER.getLength(b)));
+            values = Arrays.stream(boxed).mapToLong(Long::longValue).toArray();
+        }
+        return values;
+    }
+
+    /**
+     * @param prefixes - array for prefixes of values, or null if they are not needed.
+     * @return - all values of run.
+     */
+    private static long[] read (File f, int bufferSize, long[] prefixes) throws IOException {
+        try(RunReader reader = new RunReader(f, PACKER, bufferSize)){
+            long[] values = new long[(int)reader.count()];
+            for(int i = 0; i < values.length; i++){
+                assertTrue(reader.hasNext());
+                values[i] = reader.next();
+                if(prefixes != null){
+                    prefixes[i] = reader.prefix();
+                }
+            }
+            assertFalse(reader.hasNext());
+            return values;
+        }
+    }
+}
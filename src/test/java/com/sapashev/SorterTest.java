@@ -0,0 +1,85 @@
+package com.sapashev;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Sorts packed values by radix sort and compares result with the stable sort by length.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class SorterTest {
+    private static final Packer PACKER = new Packer(24, 40);
+
+    @Test
+    public void whenLengthsAreShortThenSortedByOnePass (){
+        check(false, values(100000, 1 << 8));
+    }
+
+    @Test
+    public void whenLengthsAreLongThenSortedBySeveralPasses (){
+        check(false, values(100000, 1 << 24));
+    }
+
+    @Test
+    public void whenArrayIsLargeThenParallelPassesKeepOrder (){
+        check(true, values(300000, 1 << 20));
+    }
+
+    @Test
+    public void whenValuesAscendOrDescendThenSortedWithoutPasses (){
+        long[] values = values(10000, 1 << 12);
+        long[] ascending = expected(values);
+        check(false, ascending);
+        long[] descending = new long[ascending.length];
+        for(int i = 0; i < ascending.length; i++){
+            descending[i] = ascending[ascending.length - 1 - i];
+        }
+        check(false, descending);
+    }
+
+    @Test
+    public void whenSorterIsReusedThenEachArrayIsSorted (){
+        try(Sorter sorter = new Sorter()){
+            check(sorter, values(1000, 1 << 16));
+            check(sorter, values(50000, 1 << 4));
+            check(sorter, values(1, 1));
+            check(sorter, new long[0]);
+        }
+    }
+
+    private static void check (boolean parallel, long[] values){
+        try(Sorter sorter = new Sorter(parallel)){
+            check(sorter, values);
+        }
+    }
+
+    private static void check (Sorter sorter, long[] values){
+        long[] sorted = values.clone();
+        sorter.sort(sorted, sorted.length, PACKER);
+        assertArrayEquals(expected(values), sorted);
+    }
+
+    /**
+     * @return - packed values of random lengths, positions are random too, so stability is seen.
+     */
+    private static long[] values (int size, int maxLength){
+        Random random = new Random(size ^ maxLength);
+        long[] values = new long[size];
+        for(int i = 0; i < size; i++){
+            values[i] = PACKER.packToLong(random.nextInt(maxLength), random.nextInt(Integer.MAX_VALUE));
+        }
+        return values;
+    }
+
+    private static long[] expected (long[] values){
+        Long[] boxed = Arrays.stream(values).boxed().toArray(Long[]::new);
+        Arrays.sort(boxed, (a, b) -> Integer.compare(PACKER.getLength(a), PACKER.getLength(b)));
+        return Arrays.stream(boxed).mapToLong(Long::longValue).toArray();
+    }
+}
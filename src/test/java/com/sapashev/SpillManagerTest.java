@@ -0,0 +1,105 @@
+package com.sapashev;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Places temp files to the spill directories of temporary folder and checks directories they were created in.
+ * All directories lie on one disk, so only fallback of placement apart from merge inputs is seen.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class SpillManagerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenRoundRobinThenDirectoriesTakeTurns () throws IOException {
+        File a = folder.newFolder();
+        File b = folder.newFolder();
+        File c = folder.newFolder();
+        try(SpillManager spills = new SpillManager(Arrays.asList(a.getPath(), b.getPath(), c.getPath()),
+                SpillManager.Placement.ROUND_ROBIN)){
+            for(File dir : new File[]{a, b, c, a, b}){
+                assertEquals(dir, spills.create("arsRUN_", 10).getParentFile());
+            }
+        }
+    }
+
+    @Test
+    public void whenDirectoryIsFullThenNextOneIsChosenUntilFileIsDeleted () throws IOException {
+        File a = folder.newFolder();
+        File b = folder.newFolder();
+        try(SpillManager spills = new SpillManager(Arrays.asList(a.getPath() + "@1k", b.getPath()),
+                SpillManager.Placement.FREE_SPACE)){
+            File first = spills.create("arsRUN_", 800);
+            assertEquals(a, first.getParentFile());
+            assertEquals(b, spills.create("arsRUN_", 800).getParentFile());
+            assertEquals(a, spills.create("arsRUN_", 224).getParentFile());
+            assertEquals(b, spills.create("arsRUN_", 1).getParentFile());
+            spills.delete(first);
+            assertFalse(first.exists());
+            assertEquals(a, spills.create("arsRUN_", 800).getParentFile());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void whenThereIsNoRoomInAnyDirectoryThenRefused () throws IOException {
+        File a = folder.newFolder();
+        File b = folder.newFolder();
+        try(SpillManager spills = new SpillManager(Arrays.asList(a.getPath() + "@100", b.getPath() + "@100"),
+                SpillManager.Placement.ROUND_ROBIN)){
+            spills.create("arsRUN_", 60);
+            spills.create("arsRUN_", 60);
+            spills.create("arsRUN_", 60);
+        }
+    }
+
+    @Test
+    public void whenInputsOfMergeHoldAllDisksThenOutputIsPlacedAnyway () throws IOException {
+        File a = folder.newFolder();
+        File b = folder.newFolder();
+        try(SpillManager spills = new SpillManager(Arrays.asList(a.getPath(), b.getPath()),
+                SpillManager.Placement.ROUND_ROBIN)){
+            File input = spills.create("arsRUN_", 10);
+            File output = spills.create("arsMRG_", 10, Collections.singletonList(input));
+            assertTrue(output.exists());
+            assertEquals(1, spills.devices());
+        }
+    }
+
+    @Test
+    public void whenSessionIsClosedThenOnlyItsFilesAreDeletedAndCapacityIsShared () throws IOException {
+        File a = folder.newFolder();
+        try(SpillManager spills = new SpillManager(Collections.singletonList(a.getPath() + "@100"),
+                SpillManager.Placement.ROUND_ROBIN)){
+            File kept = spills.create("arsRUN_", 50);
+            File dropped;
+            try(SpillManager session = spills.session()){
+                dropped = session.create("arsRUN_", 50);
+                try {
+                    session.create("arsRUN_", 1);
+                    fail("Capacity is not shared with session");
+                } catch (IOException e){
+                    //directory is full.
+                }
+            }
+            assertTrue(kept.exists());
+            assertFalse(dropped.exists());
+            spills.create("arsRUN_", 50);
+        }
+        assertEquals(0, a.list().length);
+    }
+}
@@ -0,0 +1,77 @@
+package com.sapashev;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Sorts streams of short lines, packed values of chunk are exhausted long before its bytes,
+ * and compares result with the stable sort of lines by length.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class StreamSorterTest {
+    private static final byte[] SEPARATOR = {'\n'};
+
+    @Test
+    public void whenLinesExhaustChunkThenEveryLineIsKeptInStableOrder () throws Exception {
+        List<String> lines = lines(400000, 1, 1);
+        assertEquals(expected(lines), sort(lines, new MemoryBudget(1024 * 1024), KWayMerger.DEFAULT_FAN_IN));
+    }
+
+    @Test
+    public void whenShortLinesOfDifferentLengthThenSortedByLength () throws Exception {
+        List<String> lines = lines(300000, 0, 3);
+        assertEquals(expected(lines), sort(lines, new MemoryBudget(1024 * 1024), KWayMerger.DEFAULT_FAN_IN));
+    }
+
+    @Test
+    public void whenManyRunsThenMergedBySeveralPasses () throws Exception {
+        List<String> lines = lines(300000, 0, 5);
+        assertEquals(expected(lines), sort(lines, new MemoryBudget(1024 * 1024), 2));
+    }
+
+    @Test
+    public void whenStreamFitsOneChunkThenSortedInMemory () throws Exception {
+        List<String> lines = lines(1000, 0, 20);
+        assertEquals(expected(lines), sort(lines, new MemoryBudget(64 * 1024 * 1024), KWayMerger.DEFAULT_FAN_IN));
+    }
+
+    /**
+     * @return - lines of random digits, each line differs from others by its number, so order of lines is seen.
+     */
+    static List<String> lines (int count, int minLength, int maxLength){
+        Random random = new Random(count);
+        List<String> lines = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            StringBuilder sb = new StringBuilder();
+            int length = minLength + random.nextInt(maxLength - minLength + 1);
+            for(int y = 0; y < length; y++){
+                sb.append((char)('0' + random.nextInt(10)));
+            }
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+
+    private static String expected (List<String> lines){
+        List<String> sorted = new ArrayList<>(lines);
+        sorted.sort(Comparator.comparingInt(String::length));
+        return String.join("\n", sorted) + "\n";
+    }
+
+    private static String sort (List<String> lines, MemoryBudget budget, int fanIn) throws Exception {
+        byte[] input = (String.join("\n", lines) + "\n").getBytes("UTF-8");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StreamSorter(budget, SpillManager.defaultManager(), SEPARATOR, fanIn).sort(new ByteArrayInputStream(input), out);
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,80 @@
+package com.sapashev;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Selects shortest and longest lines of file with many lines of equal length, by one range and by several,
+ * and compares selected positions with the positions of lines chosen by sorting.
+ * Among lines of equal length the first ones should be selected in both directions.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class TopSelectorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenShortestLinesTieThenFirstOnesAreSelected () throws Exception {
+        check(StreamSorterTest.lines(100000, 0, 5), "shortest:1000", 1);
+        check(StreamSorterTest.lines(1500000, 0, 5), "shortest:1000", 4);
+    }
+
+    @Test
+    public void whenLongestLinesTieThenFirstOnesAreSelected () throws Exception {
+        check(StreamSorterTest.lines(100000, 0, 5), "longest:1000", 1);
+        check(StreamSorterTest.lines(1500000, 0, 5), "longest:1000", 4);
+    }
+
+    @Test
+    public void whenLimitExceedsLinesThenAllAreSelected () throws Exception {
+        List<String> lines = StreamSorterTest.lines(100, 0, 5);
+        check(lines, "longest:1000", 1);
+        check(lines, "shortest:1000", 1);
+    }
+
+    private void check (List<String> lines, String selection, int concurrencyLevel) throws Exception {
+        Path source = folder.newFile().toPath();
+        Files.write(source, lines.stream().map(l -> l + "\n").collect(Collectors.joining()).getBytes(StandardCharsets.UTF_8));
+        Packer p = Packer.forSource(Files.size(source));
+        TopSelector selector = new TopSelector(source, p, Selection.parse(selection), concurrencyLevel);
+        List<Long> selected = new ArrayList<>();
+        try(LongArray metas = selector.select()){
+            for(long i = 0; i < metas.size(); i++){
+                selected.add(p.getPosition(metas.get(i)));
+            }
+        }
+        assertEquals(expected(lines, Selection.parse(selection)), selected);
+    }
+
+    /**
+     * @return - positions of selected lines sorted by length, lines of equal length in order of source.
+     */
+    private static List<Long> expected (List<String> lines, Selection selection){
+        long[] positions = new long[lines.size()];
+        for(int i = 1; i < positions.length; i++){
+            positions[i] = positions[i - 1] + lines.get(i - 1).length() + 1;
+        }
+        Comparator<Integer> byLength = Comparator.comparingInt(i -> lines.get(i).length());
+        Comparator<Integer> order = selection.kind() == Selection.Kind.SHORTEST ? byLength : byLength.reversed();
+        return IntStream.range(0, lines.size()).boxed()
+                .sorted(order.thenComparing(Comparator.naturalOrder()))
+                .limit(selection.limit())
+                .sorted(byLength.thenComparing(Comparator.naturalOrder()))
+                .map(i -> positions[i])
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,58 @@
+package com.sapashev;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Puts chunks of bytes, smaller and larger than window, through the windows and compares file with them.
+ * @author Arslan Sapashev
+ * @since 17.10.2026
+ * @version 1.0
+ */
+public class WindowedOutputTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenChunksFillSeveralWindowsThenFileHoldsAllOfThemInOrder () throws Exception {
+        check(100, 3, 1000);
+    }
+
+    @Test
+    public void whenOnlyOneWindowThenItIsReusedAfterEachWrite () throws Exception {
+        check(64, 1, 500);
+    }
+
+    @Test
+    public void whenNothingIsPutThenFileIsEmpty () throws Exception {
+        check(64, 2, 0);
+    }
+
+    private void check (int size, int windows, int chunks) throws Exception {
+        Random random = new Random(chunks);
+        byte[] expected = new byte[chunks * size];
+        random.nextBytes(expected);
+        Path result = folder.newFile().toPath();
+        int offset = 0;
+        try(FileChannel fc = FileChannel.open(result, StandardOpenOption.WRITE);
+            WindowedOutput out = new WindowedOutput(fc, size, windows)){
+            while (offset < expected.length){
+                int length = Math.min(random.nextInt(size * 3), expected.length - offset);
+                out.put(expected, offset, length);
+                offset += length;
+                assertEquals(offset, out.size());
+            }
+        }
+        assertArrayEquals(expected, Files.readAllBytes(result));
+    }
+}